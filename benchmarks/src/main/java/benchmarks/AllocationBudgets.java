@@ -0,0 +1,128 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import parser.Stmt;
+
+/*
+    Allocation-budget regression suite.
+    Runs canonical Pava snippets and measures the bytes the running thread
+    allocates per loop iteration around Interpreter.interpret. Any snippet that
+    goes over its budget fails the run, and with it `mvn test` in this module.
+    Budgets are bytes per iteration; tighten them when an optimization lands.
+*/
+public final class AllocationBudgets {
+    private static final int ITERATIONS = 10_000;
+    private static final int WARMUP_RUNS = 30;
+    private static final int MEASURED_RUNS = 5;
+
+    private static final class Case {
+        final String name;
+        final String source;
+        final long budget;
+
+        Case(String name, String source, long budget) {
+            this.name = name;
+            this.source = source;
+            this.budget = budget;
+        }
+    }
+
+    private AllocationBudgets() {
+    }
+
+    static List<Case> cases() {
+        List<Case> cases = new ArrayList<>();
+        cases.add(new Case("arithmetic loop",
+                "let x = 0;\n"
+                        + "let i = 0;\n"
+                        + "while (i < " + ITERATIONS + ") {\n"
+                        + "  x = x + i * 2 - 1;\n"
+                        + "  i = i + 1;\n"
+                        + "}\n",
+                410));
+        cases.add(new Case("function call",
+                "fun id(a) { return a; }\n"
+                        + "let i = 0;\n"
+                        + "while (i < " + ITERATIONS + ") {\n"
+                        + "  id(i);\n"
+                        + "  i = i + 1;\n"
+                        + "}\n",
+                360));
+        cases.add(new Case("array index read/write",
+                "let a[8];\n"
+                        + "a[0] = 0;\n"
+                        + "let i = 0;\n"
+                        + "while (i < " + ITERATIONS + ") {\n"
+                        + "  a[3] = i;\n"
+                        + "  let v = a[3];\n"
+                        + "  i = i + 1;\n"
+                        + "}\n",
+                400));
+        cases.add(new Case("string index",
+                "let s = \"abcdefgh\";\n"
+                        + "let i = 0;\n"
+                        + "while (i < " + ITERATIONS + ") {\n"
+                        + "  let c = s[3];\n"
+                        + "  i = i + 1;\n"
+                        + "}\n",
+                360));
+        cases.add(new Case("module function call",
+                Workloads.source(Workloads.MODULE_CALLS),
+                1030));
+        cases.add(new Case("print to null stream",
+                "let i = 0;\n"
+                        + "while (i < " + ITERATIONS + ") {\n"
+                        + "  print \"row\\n\";\n"
+                        + "  i = i + 1;\n"
+                        + "}\n",
+                270));
+        return cases;
+    }
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        PrintStream stdout = System.out;
+        PrintStream nullStream = new PrintStream(OutputStream.nullOutputStream());
+        int failures = 0;
+
+        stdout.printf("%-24s %12s %12s%n", "snippet", "bytes/iter", "budget");
+        for (Case c : cases()) {
+            List<Stmt> statements = Workloads.parse(c.source);
+            long best = Long.MAX_VALUE;
+            System.setOut(nullStream);
+            try {
+                for (int run = 0; run < WARMUP_RUNS; run++) {
+                    Workloads.run(statements);
+                }
+                for (int run = 0; run < MEASURED_RUNS; run++) {
+                    long before = threads.getThreadAllocatedBytes(thread);
+                    Workloads.run(statements);
+                    long allocated = threads.getThreadAllocatedBytes(thread) - before;
+                    best = Math.min(best, allocated);
+                }
+            } finally {
+                System.setOut(stdout);
+            }
+            long perIteration = best / ITERATIONS;
+            boolean over = perIteration > c.budget;
+            if (over) {
+                failures++;
+            }
+            stdout.printf("%-24s %12d %12d%s%n", c.name, perIteration, c.budget, over ? "  OVER BUDGET" : "");
+        }
+
+        if (failures > 0) {
+            System.err.println(failures + " snippet(s) exceeded their allocation budget.");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lexer.Lexer;
+import lexer.TokenBuffer;
+import parser.Parser;
+import parser.Stmt;
+
+// Parser.parse on single very long or very deeply nested expressions, the
+// shapes generated code produces. Runs on the default thread stack size.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionParserBenchmark {
+    @Param({ "chain", "nested" })
+    public String shape;
+
+    @Param({ "1000", "100000" })
+    public int operands;
+
+    private TokenBuffer buffer;
+
+    @Setup
+    public void setup() {
+        buffer = new Lexer(Workloads.expression(shape, operands)).scanTokenBuffer();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(buffer).parse();
+    }
+}
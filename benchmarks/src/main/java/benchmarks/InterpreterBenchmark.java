@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import interpreter.Interpreter;
+import parser.Stmt;
+
+// Interpreter.interpret on the standard workloads, parsed once up front.
+// Each invocation uses a fresh Interpreter, as a script run would.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark {
+    @Param({
+            Workloads.FIB,
+            Workloads.NESTED_LOOPS,
+            Workloads.STRING_BUILD,
+            Workloads.ARRAY_PUSH,
+            Workloads.MODULE_CALLS,
+            Workloads.STRING_LIB })
+    public String workload;
+
+    private List<Stmt> statements;
+
+    @Setup
+    public void setup() {
+        statements = Workloads.parse(Workloads.source(workload));
+    }
+
+    @Benchmark
+    public Interpreter interpret() {
+        return Workloads.run(statements);
+    }
+}
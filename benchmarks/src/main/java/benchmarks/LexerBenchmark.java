@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lexer.Lexer;
+import lexer.Token;
+import lexer.TokenBuffer;
+
+// Lexer.scanTokens throughput on large generated sources.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LexerBenchmark {
+    @Param({ "65536", "1048576", "8388608" })
+    public int sourceBytes;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        source = Workloads.generated(sourceBytes);
+    }
+
+    @Benchmark
+    public List<Token> scanTokens() {
+        return new Lexer(source).scanTokens();
+    }
+
+    @Benchmark
+    public TokenBuffer scanTokenBuffer() {
+        return new Lexer(source).scanTokenBuffer();
+    }
+}
@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lexer.Lexer;
+import lexer.Token;
+import lexer.TokenBuffer;
+import parser.Parser;
+import parser.Stmt;
+
+// Parser.parse on pre-lexed token lists, so lexing cost is excluded.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({ "65536", "1048576", "8388608" })
+    public int sourceBytes;
+
+    private List<Token> tokens;
+    private TokenBuffer buffer;
+
+    @Setup
+    public void setup() {
+        String source = Workloads.generated(sourceBytes);
+        tokens = Workloads.lex(source);
+        buffer = new Lexer(source).scanTokenBuffer();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens).parse();
+    }
+
+    @Benchmark
+    public List<Stmt> parseTokenBuffer() {
+        return new Parser(buffer).parse();
+    }
+}
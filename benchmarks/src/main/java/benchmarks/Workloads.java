@@ -0,0 +1,199 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import interpreter.Interpreter;
+import lexer.Lexer;
+import lexer.Token;
+import parser.Parser;
+import parser.Stmt;
+
+/*
+    Standard Pava programs shared by the benchmarks.
+    Library modules are imported by absolute path so the runs do not depend on
+    /usr/share/pava being installed.
+*/
+public final class Workloads {
+    public static final String FIB = "fib";
+    public static final String NESTED_LOOPS = "nestedLoops";
+    public static final String STRING_BUILD = "stringBuild";
+    public static final String ARRAY_PUSH = "arrayPush";
+    public static final String MODULE_CALLS = "moduleCalls";
+    public static final String STRING_LIB = "stringLib";
+
+    private static Path scratchModules;
+
+    private Workloads() {
+    }
+
+    public static String source(String name) {
+        switch (name) {
+            case FIB:
+                return "fun fib(n) {\n"
+                        + "  if (n < 2) return n;\n"
+                        + "  return fib(n - 1) + fib(n - 2);\n"
+                        + "}\n"
+                        + "let result = fib(20);\n";
+            case NESTED_LOOPS:
+                return "let sum = 0;\n"
+                        + "for (let i = 0; i < 200; i = i + 1) {\n"
+                        + "  for (let j = 0; j < 200; j = j + 1) {\n"
+                        + "    sum = sum + i * j;\n"
+                        + "  }\n"
+                        + "}\n";
+            case STRING_BUILD:
+                return "let s = \"\";\n"
+                        + "let i = 0;\n"
+                        + "while (i < 2000) {\n"
+                        + "  s = s + \"x\";\n"
+                        + "  i = i + 1;\n"
+                        + "}\n";
+            case ARRAY_PUSH:
+                return "pao \"" + module(libraryDir().resolve("array.pava")) + "\";\n"
+                        + "let a = [];\n"
+                        + "for (let i = 0; i < 300; i = i + 1) {\n"
+                        + "  a = Array.push(a, i);\n"
+                        + "}\n";
+            case MODULE_CALLS:
+                return "pao \"" + module(opsModule()) + "\";\n"
+                        + "let total = 0;\n"
+                        + "for (let i = 0; i < 10000; i = i + 1) {\n"
+                        + "  total = Ops.add(total, Ops.twice(i));\n"
+                        + "}\n";
+            case STRING_LIB:
+                return "pao \"" + module(stringModule()) + "\";\n"
+                        + "let text = \"the quick brown fox jumps over the lazy dog\";\n"
+                        + "let hits = 0;\n"
+                        + "for (let i = 0; i < 50; i = i + 1) {\n"
+                        + "  if (String.includes(text, \"lazy\")) hits = hits + 1;\n"
+                        + "  if (String.startsWith(text, \"the\")) hits = hits + 1;\n"
+                        + "  if (String.endsWith(text, \"dog\")) hits = hits + 1;\n"
+                        + "  hits = hits + String.indexOf(text, \"fox\");\n"
+                        + "  let word = String.substring(text, 4, 9);\n"
+                        + "  let joined = String.concat(word, i);\n"
+                        + "  let code = String.charCodeAt(joined, 0);\n"
+                        + "}\n";
+            default:
+                throw new IllegalArgumentException("Unknown workload: " + name);
+        }
+    }
+
+    // A large program assembled from the self-contained workloads, with every
+    // top-level name made unique so the result is still a valid script.
+    public static String generated(int targetBytes) {
+        String[] parts = { source(FIB), source(NESTED_LOOPS), source(STRING_BUILD) };
+        StringBuilder sb = new StringBuilder(targetBytes + 256);
+        int copy = 0;
+        while (sb.length() < targetBytes) {
+            String suffix = "_" + copy;
+            for (String part : parts) {
+                sb.append("// copy ").append(copy).append('\n');
+                sb.append(part
+                        .replace("fib", "fib" + suffix)
+                        .replace("result", "result" + suffix)
+                        .replace("sum", "sum" + suffix)
+                        .replace("let s ", "let s" + suffix + " ")
+                        .replace("s = s +", "s" + suffix + " = s" + suffix + " +"));
+            }
+            copy++;
+        }
+        return sb.toString();
+    }
+
+    // One statement holding a single expression of the given number of
+    // operands: a flat chain of mixed operators, or operands nested inside
+    // parentheses and unary minus that many levels deep.
+    public static String expression(String shape, int operands) {
+        String[] operators = { " + ", " * ", " - ", " / ", " < ", " == ", " and ", " or " };
+        StringBuilder sb = new StringBuilder(operands * 8);
+        sb.append("let x = ");
+        if (shape.equals("chain")) {
+            for (int i = 0; i < operands; i++) {
+                if (i > 0) {
+                    sb.append(operators[i % operators.length]);
+                }
+                sb.append(i % 3 == 0 ? "f(a, " + i + ")" : "v" + (i % 100));
+            }
+        } else if (shape.equals("nested")) {
+            for (int i = 0; i < operands; i++) {
+                sb.append(i % 2 == 0 ? "(" : "-(");
+            }
+            sb.append('1');
+            for (int i = 0; i < operands; i++) {
+                sb.append(" + ").append(i % 10).append(')');
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown expression shape: " + shape);
+        }
+        return sb.append(";\n").toString();
+    }
+
+    public static List<Token> lex(String source) {
+        return new Lexer(source).scanTokens();
+    }
+
+    public static List<Stmt> parse(String source) {
+        return new Parser(lex(source)).parse();
+    }
+
+    public static Interpreter run(List<Stmt> statements) {
+        Interpreter interpreter = new Interpreter();
+        interpreter.interpret(statements);
+        return interpreter;
+    }
+
+    // Directory holding the shipped .pava modules; -Dpava.lib overrides the lookup.
+    public static Path libraryDir() {
+        return locate("pava.lib", "src/main/lib");
+    }
+
+    // The complete string library lives at the repository root; the copy in
+    // src/main/lib only has charAt.
+    public static Path stringModule() {
+        return locate("pava.stringModule", "string.pava");
+    }
+
+    // Resolves a repository path from the benchmark or the repository directory.
+    private static Path locate(String property, String relative) {
+        String configured = System.getProperty(property);
+        if (configured != null && !configured.isEmpty()) {
+            return Path.of(configured).toAbsolutePath();
+        }
+        for (String candidate : new String[] { relative, "../" + relative }) {
+            Path path = Path.of(candidate).toAbsolutePath().normalize();
+            if (Files.exists(path)) {
+                return path;
+            }
+        }
+        throw new IllegalStateException("Cannot find " + relative + "; pass -D" + property + "=<path>");
+    }
+
+    private static synchronized Path opsModule() {
+        try {
+            if (scratchModules == null) {
+                scratchModules = Files.createTempDirectory("pava-bench");
+                scratchModules.toFile().deleteOnExit();
+            }
+            Path ops = scratchModules.resolve("ops.pava");
+            if (!Files.exists(ops)) {
+                Files.writeString(ops, "fun add(a, b) { return a + b; }\n"
+                        + "fun twice(x) { return x * 2; }\n"
+                        + "kaddo Ops;\n");
+                ops.toFile().deleteOnExit();
+            }
+            return ops;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The import statement appends ".pava" itself.
+    private static String module(Path file) {
+        String path = file.toString();
+        return path.substring(0, path.length() - ".pava".length());
+    }
+}
@@ -0,0 +1,74 @@
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/*
+    `pava --client <file>`: runs a script on a `pava --server`, forwarding
+    the working directory, arguments and standard input, and relaying the
+    script's output and exit status. See Frames for the protocol.
+*/
+class Client {
+    static void run(Path socket, String[] args) {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException err) {
+            System.err.println("No pava server is listening on " + socket + " (start one with pava --server).");
+            System.exit(1);
+        }
+
+        try {
+            Frames frames = new Frames(channel);
+            StringBuilder request = new StringBuilder(Path.of("").toAbsolutePath().toString());
+            for (String arg : args) {
+                request.append('\0').append(arg);
+            }
+            byte[] bytes = request.toString().getBytes(StandardCharsets.UTF_8);
+            frames.write(Frames.ARGS, bytes, 0, bytes.length);
+
+            // Standard input is pumped on a daemon thread while output is relayed here.
+            Thread pump = new Thread(() -> {
+                byte[] buffer = new byte[8 * 1024];
+                try {
+                    int n;
+                    while ((n = System.in.read(buffer)) > 0) {
+                        frames.write(Frames.STDIN, buffer, 0, n);
+                    }
+                    frames.write(Frames.STDIN, buffer, 0, 0);
+                } catch (IOException ignored) {
+                    // The script finished without reading all of its input.
+                }
+            }, "pava-stdin");
+            pump.setDaemon(true);
+            pump.start();
+
+            byte[] payload;
+            while ((payload = frames.read()) != null) {
+                switch (frames.type) {
+                    case Frames.STDOUT:
+                        System.out.write(payload, 0, payload.length);
+                        System.out.flush();
+                        break;
+                    case Frames.STDERR:
+                        System.out.flush();
+                        System.err.write(payload, 0, payload.length);
+                        System.err.flush();
+                        break;
+                    case Frames.EXIT:
+                        System.out.flush();
+                        System.exit(ByteBuffer.wrap(payload).getInt());
+                        break;
+                    default:
+                        break;
+                }
+            }
+            System.err.println("The pava server closed the connection.");
+        } catch (IOException err) {
+            System.err.println("Lost connection to the pava server: " + err.getMessage());
+        }
+        System.exit(1);
+    }
+}
@@ -0,0 +1,80 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/*
+    Wire format between `pava --client` and `pava --server`: a stream of
+    frames, each a type byte, a big-endian int length and that many bytes.
+
+    client -> server   ARGS    working directory and argv, NUL-separated UTF-8
+                       STDIN   bytes of standard input; an empty frame is EOF
+    server -> client   STDOUT  bytes for standard output
+                       STDERR  bytes for standard error
+                       EXIT    the four-byte exit status; always the last frame
+
+    Reads and writes go straight to the channel, so one thread can block
+    reading while another writes.
+*/
+final class Frames {
+    static final byte ARGS = 'A';
+    static final byte STDIN = 'I';
+    static final byte STDOUT = 'O';
+    static final byte STDERR = 'E';
+    static final byte EXIT = 'X';
+
+    private static final int MAX_FRAME = 16 * 1024 * 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(5);
+    private final ByteBuffer outHeader = ByteBuffer.allocate(5);
+
+    // The type of the frame last returned by read().
+    byte type;
+
+    Frames(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    // Reads the next frame and returns its payload, or null at end of stream.
+    byte[] read() throws IOException {
+        header.clear();
+        if (!fill(header, true)) {
+            return null;
+        }
+        header.flip();
+        type = header.get();
+        int length = header.getInt();
+        if (length < 0 || length > MAX_FRAME) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        fill(payload, false);
+        return payload.array();
+    }
+
+    synchronized void write(byte type, byte[] data, int offset, int length) throws IOException {
+        outHeader.clear();
+        outHeader.put(type).putInt(length).flip();
+        ByteBuffer[] frame = { outHeader, ByteBuffer.wrap(data, offset, length) };
+        while (outHeader.hasRemaining() || frame[1].hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    void writeExit(int status) throws IOException {
+        write(EXIT, ByteBuffer.allocate(4).putInt(status).array(), 0, 4);
+    }
+
+    private boolean fill(ByteBuffer buffer, boolean eofAllowed) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (eofAllowed && buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Connection closed mid-frame");
+            }
+        }
+        return true;
+    }
+}
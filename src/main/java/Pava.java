@@ -1,14 +1,21 @@
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 import java.util.Scanner;
 
-import org.jline.reader.LineReader;
-import org.jline.reader.LineReaderBuilder;
-import org.jline.reader.UserInterruptException;
-import org.jline.reader.EndOfFileException;
-
 import evaluator.Evaluator;
 import lexer.Lexer;
 import lexer.Token;
@@ -16,17 +23,32 @@ import lexer.Token;
 import parser.Parser;
 import parser.SyntaxError;
 import parser.AstPrinter;
+import parser.AstCache;
 import parser.Stmt;
 
+import interpreter.ExitSignal;
 import interpreter.Interpreter;
+import interpreter.ModuleRegistry;
+import interpreter.ScriptIo;
 
 class Pava {
     public static void main(String[] args) {
+        boolean streaming = args.length == 2 && args[0].equals("--stream");
+        boolean training = args.length == 1 && args[0].equals("--train-startup");
+        boolean server = args.length == 1 && args[0].equals("--server");
+        boolean client = args.length == 2 && args[0].equals("--client");
+        boolean checking = args.length == 2 && args[0].equals("--check");
+
         // If more than one argument is passed, show usage.
-        if (args.length > 1) {
+        if (args.length > 1 && !streaming && !client && !checking) {
             System.out.println("Usage: pava [OPTION].. [FILE]");
             System.out.println("\npava\t launch Pava interactive shell");
             System.out.println("pava <filename>\t executes the source file using the Pava interpreter");
+            System.out.println("--stream <filename>\t executes each statement as soon as it is parsed");
+            System.out.println("--check <filename>\t reports syntax errors in the file and its imports without running it");
+            System.out.println("--train-startup\t records a class-data archive that speeds up startup");
+            System.out.println("--server\t keeps a warm interpreter running for --client");
+            System.out.println("--client <filename>\t executes the source file on a running --server");
             System.out.println("-?, --help\t displays this help message");
             System.out.println("-v, --version\t show version information");
             System.exit(64);
@@ -47,104 +69,285 @@ class Pava {
             System.out.println("Usage: pava [OPTION].. [FILE]");
             System.out.println("\npava\t launch Pava interactive shell");
             System.out.println("pava <filename>\t executes the source file using the Pava interpreter");
+            System.out.println("--stream <filename>\t executes each statement as soon as it is parsed");
+            System.out.println("--check <filename>\t reports syntax errors in the file and its imports without running it");
+            System.out.println("--train-startup\t records a class-data archive that speeds up startup");
+            System.out.println("--server\t keeps a warm interpreter running for --client");
+            System.out.println("--client <filename>\t executes the source file on a running --server");
             System.out.println("-?, --help\t displays this help message");
             System.out.println("-v, --version\t show version information");
             System.exit(0);
         }
 
-        if (args.length == 1) {
+        if (training) {
+            trainStartup();
+        } else if (server) {
+            Server.serve(Server.socketPath());
+        } else if (client) {
+            Client.run(Server.socketPath(), new String[] { args[1] });
+        } else if (streaming) {
+            runFileStreaming(args[1]);
+        } else if (checking) {
+            checkFile(args[1]);
+        } else if (args.length == 1) {
             runFile(args[0]);
         } else {
-            runPrompt();
+            Repl.run();
         }
     }
 
     private static void runFile(String filename) {
+        int errorCode = runScript(Path.of(filename), new Interpreter());
+
+        String stats = System.getenv("PAVA_MODULE_STATS");
+        if (stats != null && !stats.isEmpty()) {
+            System.err.println(ModuleRegistry.stats());
+        }
+
+        // Ensure the program exits with the correct error code
+        if (errorCode != 0) {
+            System.exit(errorCode);
+        }
+
+    }
+
+    // Runs a script file on the given interpreter and returns its exit status.
+    // Shared by the command line and the server, which passes an interpreter
+    // bound to the client's streams.
+    static int runScript(Path file, Interpreter interpreter) {
         int errorCode = 0; // Track lexical and runtime errors
+        ScriptIo io = interpreter.io();
 
         try {
-            String source = Files.readString(Path.of(filename));
-            Lexer lexer = new Lexer(source);
-            List<Token> tokens = lexer.scanTokens();
-            errorCode = lexer.errorCode;
-            Parser parser = new Parser(tokens);
-            List<Stmt> statements = parser.parse();
+            // Parsed from source, or read from the compiled-AST cache on repeat runs.
+            AstCache.Result script = AstCache.load(file, io.err());
+            errorCode = script.errorCode;
+
+            interpreter.interpret(script.statements);
+
+        } catch (SyntaxError err) {
+            errorCode = 65;
+            io.err().println("[Syntax Error] " + err.getMessage());
+        } catch (ExitSignal exit) {
+            errorCode = exit.status;
+        } catch (RuntimeException re) {
+            errorCode = 70;
+            io.err().println("[ERROR] " + re.getMessage());
+        } catch (IOException err) {
+            io.err().println("Error reading file: " + err.getMessage());
+            errorCode = 1; // File-related error
+        } finally {
+            try {
+                io.flush();
+            } catch (RuntimeException re) {
+                // A batched file write that could only fail at exit.
+                errorCode = errorCode == 0 ? 70 : errorCode;
+                io.err().println("[ERROR] " + re.getMessage());
+            }
+            io.err().flush();
+        }
+        return errorCode;
+    }
+
+    // Parses a script and every module it imports, directly or not, in full
+    // and reports the first error without running anything. Imports are
+    // otherwise parsed lazily, so a syntax error inside an imported function
+    // is only reported when that function is called.
+    private static void checkFile(String filename) {
+        ScriptIo io = ScriptIo.SYSTEM;
+        Path script = Path.of(filename);
+        Deque<Path> pending = new ArrayDeque<>();
+        Set<Path> seen = new HashSet<>();
+        pending.add(script);
+        Path file = script;
+        int errorCode = 0;
 
+        try {
+            while (errorCode == 0 && !pending.isEmpty()) {
+                file = pending.poll();
+                AstCache.Result result = AstCache.load(file, io.err());
+                errorCode = result.errorCode;
+                for (String name : ModuleRegistry.importNames(result.statements)) {
+                    Path module = ModuleRegistry.locate(name, io);
+                    if (module == null) {
+                        io.err().println("[ERROR] " + file + ": Module file not found: "
+                                + (name.endsWith(".pava") ? name : name + ".pava"));
+                        errorCode = 70;
+                        break;
+                    }
+                    if (seen.add(module)) {
+                        pending.add(module);
+                    }
+                }
+            }
+        } catch (SyntaxError err) {
+            errorCode = 65;
+            io.err().println("[Syntax Error] " + (file == script ? "" : file + ": ") + err.getMessage());
+        } catch (IOException err) {
+            io.err().println("Error reading file: " + err.getMessage());
+            errorCode = 1;
+        }
+
+        if (errorCode != 0) {
+            System.exit(errorCode);
+        }
+    }
+
+    // Lexes from a buffered file channel and executes each top-level statement
+    // as soon as it is parsed, so output starts before the whole file is read
+    // and finished statements can be garbage-collected. Statements before a
+    // syntax error have already run when the error is reported.
+    private static void runFileStreaming(String filename) {
+        int errorCode = 0;
+
+        try (FileChannel channel = FileChannel.open(Path.of(filename));
+                Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), 64 * 1024)) {
+            Lexer lexer = new Lexer(reader);
+            Parser parser = new Parser(lexer);
             Interpreter interpreter = new Interpreter();
-            interpreter.interpret(statements);
+            Stmt statement;
+            while ((statement = parser.nextStatement()) != null) {
+                interpreter.interpret(statement);
+                // Output keeps pace with the input, and precedes errors from lexing the next statement.
+                interpreter.io().flush();
+            }
+            errorCode = lexer.errorCode;
 
         } catch (SyntaxError err) {
             errorCode = 65;
-            System.err.println("[Syntax Error] " + err.getMessage());
+            ScriptIo.SYSTEM.err().println("[Syntax Error] " + err.getMessage());
+        } catch (ExitSignal exit) {
+            ScriptIo.SYSTEM.flush();
+            System.exit(exit.status);
+        } catch (UncheckedIOException err) {
+            ScriptIo.SYSTEM.err().println("Error reading file: " + err.getCause().getMessage());
+            System.exit(1);
         } catch (RuntimeException re) {
             errorCode = 70;
-            System.err.println("[ERROR] " + re.getMessage());
+            ScriptIo.SYSTEM.err().println("[ERROR] " + re.getMessage());
         } catch (IOException err) {
-            System.err.println("Error reading file: " + err.getMessage());
+            ScriptIo.SYSTEM.err().println("Error reading file: " + err.getMessage());
             System.exit(1); // File-related error
         }
 
-        // Ensure the program exits with the correct error code
         if (errorCode != 0) {
             System.exit(errorCode);
         }
-
     }
 
-    private static void runPrompt() {
-        // Build a LineReader with JLine 3 to support history and arrow keys.
-        LineReader reader = LineReaderBuilder.builder().build();
-        Interpreter interpreter = new Interpreter();
-        System.out.println("PavaLang 1.0.0 Interactive Shell.");
-        System.out.println("Type \"help()\" for more information or  \"quit()\" to exit.");
-        while (true) {
-            String line = null;
-            try {
-                line = reader.readLine("💪 >> ");
-            } catch (UserInterruptException e) {
-                // Handle Ctrl-C by continuing to next loop iteration.
-                continue;
-            } catch (EndOfFileException e) {
-                // Ctrl-D (EOF) ends the REPL.
-                break;
-            }
+    // Runs a representative script in a child JVM with -XX:ArchiveClassesAtExit,
+    // producing an AppCDS archive of every class it loaded. The launcher script
+    // passes the archive to the JVM with -XX:SharedArchiveFile when it exists,
+    // so later runs map those classes instead of loading and verifying them.
+    // The archive is tied to this jar and JVM: re-run after upgrading either.
+    private static void trainStartup() {
+        Path dir = AstCache.location();
+        Path jar;
+        try {
+            jar = Path.of(Pava.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (Exception e) {
+            jar = null;
+        }
+        if (dir == null || jar == null || !Files.isRegularFile(jar)) {
+            System.err.println("--train-startup must be run from pava.jar with a writable cache directory.");
+            System.exit(1);
+        }
 
-            if (line == null || line.trim().isEmpty())
-                continue; // Skip empty lines.
-            else if (line.trim().equals("help()")) {
-                System.out.println("-------------------------------------");
-                System.out.println("PavaLang 1.0.0");
-                System.out.println("Author: @raz0229");
-                System.out.println();
-                System.out.println("For help on syntax or licese:");
-                System.out.println("https://github.com/raz0229/pavalang");
-                System.out.println("-------------------------------------");
-                continue;
-            }
-            else if (line.trim().equals("quit()")) {
-                System.exit(0);
-            }
-            else if (line.trim().equals("quit")) {
-                System.out.println("Use quit() or Ctrl-D (i.e. EOF) to exit");
-                continue;
-            }
-            else if (line.trim().equals("help")) {
-                System.out.println("Use help() or Ctrl-D (i.e. EOF) to exit");
-                continue;
+        Path archive = dir.resolve("pava.jsa");
+        Path work = null;
+        try {
+            Files.createDirectories(dir);
+            work = Files.createTempDirectory("pava-train");
+            Path script = writeTrainingScript(work);
+            Path module = work.resolve("train_module.pava");
+
+            // The first run fills a scratch AST cache with the module, so the
+            // recorded run covers both cache hits (the module) and misses (the script).
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            Path scratch = work.resolve("cache");
+            Path pending = work.resolve("pava.jsa");
+            train(scratch, java, "-jar", jar.toString(), module.toString());
+            train(scratch, java, "-XX:ArchiveClassesAtExit=" + pending, "-Xlog:cds=off", "-Xlog:cds+dynamic=off",
+                    "-jar", jar.toString(), script.toString());
+            if (!Files.isRegularFile(pending)) {
+                System.err.println("The JVM did not write a class-data archive.");
+                System.exit(1);
             }
-            try {
-                Lexer lexer = new Lexer(line);
-                List<Token> tokens = lexer.scanTokens();
-                Parser parser = new Parser(tokens);
-                List<Stmt> statements = parser.parse();
-                interpreter.interpret(statements);
-
-                System.out.print("\n");
-            } catch (SyntaxError err) {
-                System.err.println("[Syntax Error] " + err.getMessage());
-            } catch (RuntimeException re) {
-                System.err.println("[ERROR] " + re.getMessage());
+            Files.move(pending, archive, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Startup archive written to " + archive);
+
+        } catch (IOException err) {
+            System.err.println("Error training startup archive: " + err.getMessage());
+            System.exit(1);
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        } finally {
+            if (work != null) {
+                deleteTree(work);
             }
         }
     }
+
+    // Writes the training script and the module it imports into dir.
+    static Path writeTrainingScript(Path dir) throws IOException {
+        Path module = dir.resolve("train_module.pava");
+        Path script = dir.resolve("train.pava");
+        Files.writeString(module, TRAINING_MODULE);
+        String modulePath = module.toString();
+        Files.writeString(script, "pao \"" + modulePath.substring(0, modulePath.length() - ".pava".length())
+                + "\";\n" + TRAINING_SCRIPT);
+        return script;
+    }
+
+    private static void train(Path cacheDir, String... command) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.environment().put("PAVA_CACHE_DIR", cacheDir.toString());
+        builder.environment().remove("PAVA_NO_CACHE");
+        builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        int status = builder.start().waitFor();
+        if (status != 0) {
+            throw new IOException("training run exited with status " + status);
+        }
+    }
+
+    static void deleteTree(Path root) {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static final String TRAINING_MODULE =
+            "fun add(a, b) { return a + b; }\n"
+            + "fun greet(name) { return \"hello \" + name; }\n"
+            + "kaddo Train;\n";
+
+    // Touches the lexer, parser, interpreter and every builtin that has no side effects.
+    private static final String TRAINING_SCRIPT =
+            "let total = 0;\n"
+            + "for (let i = 0; i < 200; i = i + 1) {\n"
+            + "  if (i > 100 and i != 150 or i == 3) total = Train.add(total, i * 2 - 1 / 2);\n"
+            + "  else total = total + 1;\n"
+            + "}\n"
+            + "let items[4];\n"
+            + "items[0] = \"a\";\n"
+            + "let list = [1, 2.5, true, nil, \"text\"];\n"
+            + "let s = Train.greet(\"pava\");\n"
+            + "let c = s[1];\n"
+            + "let n = 0;\n"
+            + "while (n < 10) { n = n + 1; }\n"
+            + "fun counter() {\n"
+            + "  let count = 0;\n"
+            + "  fun inc() { count = count + 1; return count; }\n"
+            + "  return inc;\n"
+            + "}\n"
+            + "let next = counter();\n"
+            + "next();\n"
+            + "print typeof(total) + string(length(s)) + string(number(\"42\")) + string(clock() - clock()) + pava();\n"
+            + "print fromAsciiCode(getAsciiCode(c)) + \"\\t\\n\";\n"
+            + "print list;\n"
+            + "print items;\n"
+            + "print (-total >= 0) == !false;\n";
 }
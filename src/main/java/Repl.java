@@ -0,0 +1,90 @@
+import java.util.List;
+
+import org.jline.reader.LineReader;
+import org.jline.reader.LineReaderBuilder;
+import org.jline.reader.UserInterruptException;
+import org.jline.reader.EndOfFileException;
+import org.jline.terminal.Terminal;
+
+import lexer.Lexer;
+import lexer.Token;
+
+import parser.Parser;
+import parser.SyntaxError;
+import parser.Stmt;
+
+import interpreter.ExecutionLimits;
+import interpreter.ExitSignal;
+import interpreter.Interpreter;
+import interpreter.ScriptIo;
+
+// The interactive shell. Kept apart from Pava so the JLine terminal classes
+// are only loaded when a REPL is actually started.
+class Repl {
+    static void run() {
+        // Build a LineReader with JLine 3 to support history and arrow keys.
+        LineReader reader = LineReaderBuilder.builder().build();
+        Interpreter interpreter = new Interpreter();
+        // Ctrl-C while a statement runs cancels it; at the prompt JLine
+        // handles it as before.
+        ExecutionLimits limits = interpreter.limits();
+        reader.getTerminal().handle(Terminal.Signal.INT, signal -> limits.cancel());
+        System.out.println("PavaLang 1.0.0 Interactive Shell.");
+        System.out.println("Type \"help()\" for more information or  \"quit()\" to exit.");
+        while (true) {
+            String line = null;
+            try {
+                ScriptIo.SYSTEM.flush();
+                line = reader.readLine("💪 >> ");
+            } catch (UserInterruptException e) {
+                // Handle Ctrl-C by continuing to next loop iteration.
+                continue;
+            } catch (EndOfFileException e) {
+                // Ctrl-D (EOF) ends the REPL.
+                break;
+            }
+
+            if (line == null || line.trim().isEmpty())
+                continue; // Skip empty lines.
+            else if (line.trim().equals("help()")) {
+                System.out.println("-------------------------------------");
+                System.out.println("PavaLang 1.0.0");
+                System.out.println("Author: @raz0229");
+                System.out.println();
+                System.out.println("For help on syntax or licese:");
+                System.out.println("https://github.com/raz0229/pavalang");
+                System.out.println("-------------------------------------");
+                continue;
+            }
+            else if (line.trim().equals("quit()")) {
+                System.exit(0);
+            }
+            else if (line.trim().equals("quit")) {
+                System.out.println("Use quit() or Ctrl-D (i.e. EOF) to exit");
+                continue;
+            }
+            else if (line.trim().equals("help")) {
+                System.out.println("Use help() or Ctrl-D (i.e. EOF) to exit");
+                continue;
+            }
+            try {
+                Lexer lexer = new Lexer(line);
+                List<Token> tokens = lexer.scanTokens();
+                Parser parser = new Parser(tokens);
+                List<Stmt> statements = parser.parse();
+                limits.reset();
+                interpreter.interpret(statements);
+                ScriptIo.SYSTEM.flush();
+
+                System.out.print("\n");
+            } catch (ExitSignal exit) {
+                ScriptIo.SYSTEM.flush();
+                System.exit(exit.status);
+            } catch (SyntaxError err) {
+                ScriptIo.SYSTEM.err().println("[Syntax Error] " + err.getMessage());
+            } catch (RuntimeException re) {
+                ScriptIo.SYSTEM.err().println("[ERROR] " + re.getMessage());
+            }
+        }
+    }
+}
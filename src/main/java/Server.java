@@ -0,0 +1,251 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import parser.AstCache;
+
+import interpreter.Interpreter;
+import interpreter.ModuleRegistry;
+import interpreter.ScriptIo;
+
+/*
+    `pava --server`: a long-lived JVM that runs scripts for `pava --client`.
+    The standard library is parsed once at startup and parsed ASTs stay in
+    memory, and a warm-up pass gets the interpreter JIT-compiled before the
+    first request. Each request runs on its own thread with a fresh
+    Interpreter, so globals are never shared between runs; only the
+    immutable ASTs are. See Frames for the protocol.
+
+    Scripts run inside the server process: they see the server's
+    environment variables, but the client's working directory and streams.
+*/
+class Server {
+    private static final int WARMUP_RUNS = 50;
+
+    // $PAVA_SOCKET, else pava.sock in the cache directory.
+    static Path socketPath() {
+        String socket = System.getenv("PAVA_SOCKET");
+        if (socket != null && !socket.isEmpty()) {
+            return Path.of(socket);
+        }
+        Path dir = AstCache.location();
+        if (dir == null) {
+            System.err.println("Cannot determine a socket path; set PAVA_SOCKET.");
+            System.exit(1);
+        }
+        return dir.resolve("pava.sock");
+    }
+
+    static void serve(Path socket) {
+        AstCache.retainInMemory();
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            if (Files.exists(socket)) {
+                if (isListening(socket)) {
+                    System.err.println("A pava server is already listening on " + socket);
+                    System.exit(1);
+                }
+                Files.delete(socket); // left behind by a server that did not shut down cleanly
+            }
+            if (socket.getParent() != null) {
+                Files.createDirectories(socket.getParent());
+            }
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socket);
+                } catch (IOException ignored) {
+                }
+            }));
+
+            preloadLibrary();
+            warmUp();
+            System.out.println("PavaLang server listening on " + socket);
+
+            while (true) {
+                SocketChannel client = server.accept();
+                Thread request = new Thread(() -> handle(client), "pava-request");
+                request.start();
+            }
+        } catch (IOException err) {
+            System.err.println("Server error: " + err.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static boolean isListening(Path socket) {
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Parses every standard library module into the shared module registry.
+    private static void preloadLibrary() {
+        String libraryBaseDir = System.getenv("PAVA_LIB_DIR");
+        if (libraryBaseDir == null || libraryBaseDir.isEmpty()) {
+            libraryBaseDir = "/usr/share/pava";
+        }
+        Path library = Path.of(libraryBaseDir);
+        if (!Files.isDirectory(library)) {
+            return;
+        }
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+        try (DirectoryStream<Path> modules = Files.newDirectoryStream(library, "*.pava")) {
+            for (Path module : modules) {
+                try {
+                    ModuleRegistry.statements(module.toRealPath(), quiet);
+                } catch (IOException | RuntimeException e) {
+                    // Reported to whichever script imports it.
+                }
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Runs the startup training script repeatedly so the interpreter is compiled before the first request.
+    private static void warmUp() {
+        Path work = null;
+        try {
+            work = Files.createTempDirectory("pava-warmup");
+            Path script = Pava.writeTrainingScript(work);
+            PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+            for (int run = 0; run < WARMUP_RUNS; run++) {
+                ScriptIo io = new ScriptIo(InputStream.nullInputStream(), quiet, quiet, work);
+                Pava.runScript(script, new Interpreter(io));
+            }
+        } catch (IOException ignored) {
+        } finally {
+            if (work != null) {
+                Pava.deleteTree(work);
+            }
+        }
+    }
+
+    private static void handle(SocketChannel channel) {
+        try (channel) {
+            Frames frames = new Frames(channel);
+            byte[] request = frames.read();
+            if (request == null || frames.type != Frames.ARGS) {
+                return;
+            }
+            String[] parts = new String(request, StandardCharsets.UTF_8).split("\0", -1);
+            Path cwd = Path.of(parts[0]);
+            String[] args = Arrays.copyOfRange(parts, 1, parts.length);
+
+            PrintStream out = new PrintStream(
+                    new BufferedOutputStream(new FrameOutputStream(frames, Frames.STDOUT, null), 8 * 1024),
+                    false, StandardCharsets.UTF_8);
+            // Standard error is unbuffered and flushes standard output first, keeping the two in order.
+            PrintStream err = new PrintStream(new FrameOutputStream(frames, Frames.STDERR, out),
+                    true, StandardCharsets.UTF_8);
+            InputStream in = new FrameInputStream(frames, out);
+
+            int status;
+            if (args.length != 1) {
+                err.println("Usage: pava --client <filename>");
+                status = 64;
+            } else {
+                Interpreter interpreter = new Interpreter(new ScriptIo(in, out, err, cwd));
+                status = Pava.runScript(cwd.resolve(args[0]), interpreter);
+            }
+            out.flush();
+            frames.writeExit(status);
+        } catch (IOException | RuntimeException e) {
+            // The client went away; there is nobody left to report to.
+        }
+    }
+
+    // Sends everything written to it as frames of one type. A failed write
+    // (the client disconnected) is rethrown unchecked, so PrintStream cannot
+    // swallow it and the script stops instead of running on unobserved.
+    private static final class FrameOutputStream extends OutputStream {
+        private final Frames frames;
+        private final byte type;
+        private final PrintStream before;
+
+        FrameOutputStream(Frames frames, byte type, PrintStream before) {
+            this.frames = frames;
+            this.type = type;
+            this.before = before;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (len == 0) {
+                return;
+            }
+            if (before != null) {
+                before.flush();
+            }
+            try {
+                frames.write(type, b, off, len);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Standard input of a request, read from the client's STDIN frames on
+    // demand. Pending output is flushed before blocking, so prompts appear.
+    private static final class FrameInputStream extends InputStream {
+        private final Frames frames;
+        private final PrintStream out;
+        private byte[] chunk = new byte[0];
+        private int position = 0;
+        private boolean eof = false;
+
+        FrameInputStream(Frames frames, PrintStream out) {
+            this.frames = frames;
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == chunk.length) {
+                if (eof) {
+                    return -1;
+                }
+                out.flush();
+                byte[] payload = frames.read();
+                if (payload == null || (frames.type == Frames.STDIN && payload.length == 0)) {
+                    eof = true;
+                } else if (frames.type == Frames.STDIN) {
+                    chunk = payload;
+                    position = 0;
+                }
+            }
+            int n = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
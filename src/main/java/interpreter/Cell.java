@@ -0,0 +1,32 @@
+package interpreter;
+
+/*
+    A variable shared by the scope that holds it and the flat closures that
+    use it (see Environment.capture). A scope that did not yet define the
+    variable when a closure was made holds an UNBOUND cell, linked to the
+    cell for the same name one scope further out, so a later definition is
+    still found first, as it would be by walking the scopes.
+*/
+final class Cell {
+    static final Object UNBOUND = new Object();
+
+    // Nil is null; tasks may share the closure, so writes are published.
+    volatile Object value;
+    final Cell next;
+
+    Cell(Object value, Cell next) {
+        this.value = value;
+        this.next = next;
+    }
+
+    // This cell or the nearest one further out that holds a value; null
+    // when the variable is defined in none of their scopes.
+    Cell bound() {
+        for (Cell cell = this; cell != null; cell = cell.next) {
+            if (cell.value != UNBOUND) {
+                return cell;
+            }
+        }
+        return null;
+    }
+}
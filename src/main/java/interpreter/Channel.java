@@ -0,0 +1,267 @@
+package interpreter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import lexer.Token;
+
+/*
+    A queue for passing values between tasks, made by channel(capacity).
+    With a capacity of 0 the channel is unbuffered: send() waits until a
+    receiver has taken its value. A closed channel still delivers what is
+    buffered, then receives nil.
+
+    Blocking uses j.u.c locks and LockSupport, which park virtual threads
+    without pinning their carrier. On a ForkJoinPool every wait goes through
+    ForkJoinPool.managedBlock, so the pool adds a worker instead of starving.
+    Given the script's ExecutionLimits, a wait wakes every POLL_MILLIS to
+    poll them, so cancelling or timing out the script ends it.
+*/
+public final class Channel {
+    private static final Token NO_TOKEN = new Token(null, "NIL", "NIL", 0);
+    // ArrayDeque cannot hold null, so nil travels as NIL.
+    private static final Object NIL = new Object();
+
+    private final int capacity;
+    private final ArrayDeque<Object> buffer = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    // Registered select() calls, woken when a value arrives or the channel closes.
+    private final List<Waiter> waiters = new ArrayList<>(2);
+    private long sent = 0;
+    private long received = 0;
+    private boolean closed = false;
+
+    public Channel(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void send(Object value) {
+        send(value, null);
+    }
+
+    public void send(Object value, ExecutionLimits limits) {
+        lock.lock();
+        try {
+            // An unbuffered channel holds at most one value, whose sender waits below.
+            await(() -> closed || buffer.size() < Math.max(capacity, 1), limits);
+            if (closed) {
+                throw new RuntimeError(NO_TOKEN, "Send on a closed channel.");
+            }
+            buffer.addLast(value == null ? NIL : value);
+            long ticket = ++sent;
+            changed.signalAll();
+            wakeWaiters();
+            if (capacity == 0) {
+                // Rendezvous: wait until a receiver has taken this value.
+                await(() -> received >= ticket || closed, limits);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits for a value; nil once the channel is closed and drained.
+    public Object receive(ExecutionLimits limits) {
+        lock.lock();
+        try {
+            await(() -> !buffer.isEmpty() || closed, limits);
+            return buffer.isEmpty() ? null : take();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // [true, value] if a value was ready, else [false, nil]; never waits.
+    public List<Object> tryReceive() {
+        lock.lock();
+        try {
+            if (buffer.isEmpty()) {
+                return Arrays.asList(false, null);
+            }
+            return Arrays.asList(true, take());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+            wakeWaiters();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Receives from whichever channel is ready first, as [index, value]. A
+    // closed, drained channel is ready with nil. Earlier channels win ties.
+    public static List<Object> select(List<Channel> channels, ExecutionLimits limits) {
+        Waiter waiter = new Waiter(Thread.currentThread());
+        while (true) {
+            List<Object> ready = poll(channels);
+            if (ready != null) {
+                return ready;
+            }
+            waiter.woken = false;
+            for (Channel channel : channels) {
+                channel.register(waiter);
+            }
+            try {
+                // Re-check after registering, so a send in between is not missed.
+                ready = poll(channels);
+                if (ready != null) {
+                    return ready;
+                }
+                block(waiter, limits);
+            } finally {
+                for (Channel channel : channels) {
+                    channel.unregister(waiter);
+                }
+            }
+        }
+    }
+
+    private static List<Object> poll(List<Channel> channels) {
+        for (int i = 0; i < channels.size(); i++) {
+            Channel channel = channels.get(i);
+            channel.lock.lock();
+            try {
+                if (!channel.buffer.isEmpty()) {
+                    return Arrays.asList((double) i, channel.take());
+                }
+                if (channel.closed) {
+                    return Arrays.asList((double) i, null);
+                }
+            } finally {
+                channel.lock.unlock();
+            }
+        }
+        return null;
+    }
+
+    private Object take() {
+        Object value = buffer.removeFirst();
+        received++;
+        changed.signalAll();
+        return value == NIL ? null : value;
+    }
+
+    private void register(Waiter waiter) {
+        lock.lock();
+        try {
+            waiters.add(waiter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unregister(Waiter waiter) {
+        lock.lock();
+        try {
+            waiters.remove(waiter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void wakeWaiters() {
+        for (Waiter waiter : waiters) {
+            waiter.wake();
+        }
+    }
+
+    // Waits on the condition until ready; the lock must be held. Polls
+    // limits while waiting, unless they are null.
+    private void await(BooleanSupplier ready, ExecutionLimits limits) {
+        if (ready.getAsBoolean()) {
+            return;
+        }
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    while (!ready.getAsBoolean()) {
+                        if (limits == null) {
+                            changed.await();
+                        } else {
+                            changed.await(ExecutionLimits.POLL_MILLIS, TimeUnit.MILLISECONDS);
+                            limits.poll();
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return ready.getAsBoolean();
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError(NO_TOKEN, "Interrupted while waiting on a channel.");
+        }
+    }
+
+    private static void block(Waiter waiter, ExecutionLimits limits) {
+        try {
+            waiter.limits = limits;
+            ForkJoinPool.managedBlock(waiter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError(NO_TOKEN, "Interrupted while waiting on a channel.");
+        }
+    }
+
+    private static final class Waiter implements ForkJoinPool.ManagedBlocker {
+        final Thread thread;
+        volatile boolean woken;
+        ExecutionLimits limits;
+
+        Waiter(Thread thread) {
+            this.thread = thread;
+        }
+
+        void wake() {
+            woken = true;
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            while (!woken) {
+                if (limits == null) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(ExecutionLimits.POLL_MILLIS));
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (limits != null && !woken) {
+                    limits.poll();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return woken;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<channel>";
+    }
+}
@@ -1,42 +1,231 @@
 package interpreter;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import lexer.Token;
+import java.util.concurrent.ConcurrentHashMap;
+import interpreter.builtins.Builtins;
+import parser.Stmt;
 
 public class Environment {
-    private final Map<String, Object> values = new HashMap<>();
-    private final Environment enclosing;
+    // Scopes can be shared by concurrently running tasks (globals, and the
+    // closures of functions), so they use a concurrent map. It cannot hold
+    // null, so nil is stored as NIL. A variable a closure uses is held in a
+    // Cell, which the closure shares; an entry never changes back from one.
+    private static final Object NIL = new Object();
+
+    // Null for a frame: the scope of a block or call that no closure can
+    // capture (see Stmt.Block.scopeEscapes). Only the thread running it can
+    // see a frame, so its variables are kept in plain arrays searched from
+    // the end, and the interpreter reuses it once the scope exits.
+    private final Map<String, Object> values;
+    private String[] names;
+    private Object[] slots;
+    private int size;
+    private Environment enclosing;
+    // Set once a variable here is held in a Cell. Only the thread running a
+    // scope turns its variables into cells, and the global scope never has
+    // any, so the plain map operations are safe while this is false.
+    private boolean hasCells;
 
     public Environment() {
+        this.values = new ConcurrentHashMap<>();
         this.enclosing = null;
     }
 
     public Environment(Environment enclosing) {
+        this.values = new ConcurrentHashMap<>();
+        this.enclosing = enclosing;
+    }
+
+    private Environment(Environment enclosing, int capacity) {
+        this.values = null;
+        this.names = new String[capacity];
+        this.slots = new Object[capacity];
+        this.enclosing = enclosing;
+    }
+
+    // A new frame; Interpreter.acquireFrame hands out reused ones.
+    static Environment frame(Environment enclosing) {
+        return new Environment(enclosing, 4);
+    }
+
+    // Makes a released frame an empty scope inside enclosing.
+    void reuse(Environment enclosing) {
         this.enclosing = enclosing;
     }
 
+    // Empties a frame whose scope has exited, dropping its values.
+    void clear() {
+        Arrays.fill(slots, 0, size, null);
+        size = 0;
+        enclosing = null;
+    }
+
     public void define(String name, Object value) {
-        values.put(name, value);
+        if (values != null) {
+            if (hasCells) {
+                Object current = values.get(name);
+                if (current instanceof Cell) {
+                    ((Cell) current).value = value;
+                    return;
+                }
+            }
+            values.put(name, value == null ? NIL : value);
+            return;
+        }
+        int slot = slot(name);
+        if (slot < 0) {
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slot = size++;
+            names[slot] = name;
+        }
+        slots[slot] = value;
     }
     
-    public Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
+    // The line is only used to report an undefined variable.
+    public Object get(String name, int line) {
+        if (values == null) {
+            int slot = slot(name);
+            return slot >= 0 ? slots[slot] : enclosing.get(name, line);
+        }
+        Object value = values.get(name);
+        if (value instanceof Cell) {
+            Cell cell = ((Cell) value).bound();
+            if (cell != null) {
+                return cell.value;
+            }
+        } else if (value != null) {
+            return value == NIL ? null : value;
         }
-        if (enclosing != null) return enclosing.get(name);
-        throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+        if (enclosing != null) return enclosing.get(name, line);
+        if (defineBuiltin(name)) return values.get(name);
+        throw new RuntimeError(line, "Undefined variable '" + name + "'.");
     }
     
-    public void assign(Token name, Object value) {
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
+    public void assign(String name, int line, Object value) {
+        if (values == null) {
+            int slot = slot(name);
+            if (slot >= 0) {
+                slots[slot] = value;
+            } else {
+                enclosing.assign(name, line, value);
+            }
             return;
         }
+        if (!hasCells) {
+            if (values.replace(name, value == null ? NIL : value) != null) {
+                return;
+            }
+        } else {
+            Object current = values.get(name);
+            if (current instanceof Cell) {
+                Cell cell = ((Cell) current).bound();
+                if (cell != null) {
+                    cell.value = value;
+                    return;
+                }
+            } else if (current != null) {
+                values.put(name, value == null ? NIL : value);
+                return;
+            }
+        }
         if (enclosing != null) {
-            enclosing.assign(name, value);
+            enclosing.assign(name, line, value);
+            return;
+        }
+        // Builtins count as defined globals, so they can be reassigned.
+        if (defineBuiltin(name)) {
+            define(name, value);
             return;
         }
-        throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+        throw new RuntimeError(line, "Undefined variable '" + name + "'.");
+    }
+
+    // The variables defined directly in this scope, with nil as null.
+    Map<String, Object> bindings() {
+        Map<String, Object> bindings = new HashMap<>();
+        if (values == null) {
+            for (int i = 0; i < size; i++) {
+                bindings.put(names[i], slots[i]);
+            }
+            return bindings;
+        }
+        values.forEach((name, value) -> {
+            if (value instanceof Cell) {
+                value = ((Cell) value).value;
+                if (value != Cell.UNBOUND) {
+                    bindings.put(name, value);
+                }
+            } else {
+                bindings.put(name, value == NIL ? null : value);
+            }
+        });
+        return bindings;
+    }
+
+    // The closure for a function declared in this scope that uses names
+    // from outside itself: a scope holding only those variables' cells,
+    // directly inside the global scope. So the function keeps alive just
+    // the variables it uses, and reaches each in one step. A function
+    // declared in the global scope closes over it directly.
+    Environment capture(Stmt.Function function) {
+        Environment root = this;
+        while (root.enclosing != null) {
+            if (root.values == null) {
+                // Frames are never captured; keep the whole chain if one is.
+                return this;
+            }
+            root = root.enclosing;
+        }
+        if (root == this) {
+            return this;
+        }
+        Environment closure = new Environment(root);
+        closure.hasCells = true;
+        for (String name : function.freeNames()) {
+            closure.values.put(name, cell(name));
+        }
+        return closure;
+    }
+
+    // The cell for name in this scope, which is not the global one, turning
+    // its value into a cell or adding an unbound one linked further out.
+    private Cell cell(String name) {
+        for (;;) {
+            Object current = values.get(name);
+            if (current instanceof Cell) {
+                return (Cell) current;
+            }
+            hasCells = true;
+            Cell cell = current != null ? new Cell(current == NIL ? null : current, null)
+                    : new Cell(Cell.UNBOUND, enclosing.enclosing != null ? enclosing.cell(name) : null);
+            if (current == null ? values.putIfAbsent(name, cell) == null
+                    : values.replace(name, current, cell)) {
+                return cell;
+            }
+        }
+    }
+
+    // A frame's slot for name, or -1.
+    private int slot(String name) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Globals fall back to the builtins, which are created on first use and
+    // then cached here like any other global.
+    private boolean defineBuiltin(String name) {
+        PavaCallable builtin = Builtins.lookup(name);
+        if (builtin == null) return false;
+        values.putIfAbsent(name, builtin);
+        return true;
     }
 }
@@ -0,0 +1,144 @@
+package interpreter;
+
+import java.io.PrintStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import lexer.Token;
+
+/*
+    Budget, deadline and cancellation for a running script.
+
+    Interpreters poll at every loop iteration and function entry; each of
+    those is one step. Polls only bump a counter in the interpreter, which
+    calls check() once every CHECK_INTERVAL steps (sooner when little budget
+    is left), so limits cost next to nothing when they are not hit and
+    cancellation is noticed within a thousand or so steps. A limit that has
+    been hit stays hit, so every task of the script stops.
+
+    One instance is shared by an interpreter, its forks and its module
+    interpreters; any thread may cancel it. Blocking waits (send(),
+    receive(), select(), await(), waitFor()) take no steps, so they wake
+    every POLL_MILLIS to poll(); a cancelled script stops even while it
+    waits on a channel. Only input() is not interrupted.
+
+    It also carries what spawned tasks leave for the rest of the run: an
+    exit() called in a task ends the whole script at the next check, and
+    failures of tasks nobody awaited are reported when the script ends.
+*/
+public final class ExecutionLimits {
+    private static final int CHECK_INTERVAL = 1024;
+    // How often a blocked wait wakes up to poll().
+    static final long POLL_MILLIS = 100;
+
+    private final AtomicLong remainingSteps = new AtomicLong();
+    private volatile boolean budgeted = false;
+    private volatile boolean timed = false;
+    private volatile long deadline;
+    private volatile boolean cancelled = false;
+    private volatile String failure;
+    private volatile ExitSignal exit;
+    private final Queue<Task> failedTasks = new ConcurrentLinkedQueue<>();
+
+    // Allows this many more steps.
+    public void setStepBudget(long steps) {
+        remainingSteps.set(steps);
+        budgeted = true;
+    }
+
+    // Allows this many more milliseconds of running time.
+    public void setTimeout(long millis) {
+        deadline = System.nanoTime() + millis * 1_000_000;
+        timed = true;
+    }
+
+    // Stops the script at its next safepoint.
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Ends the run with the status of an exit() called in a task; the first
+    // one wins.
+    void exit(ExitSignal signal) {
+        synchronized (this) {
+            if (exit == null) {
+                exit = signal;
+            }
+        }
+    }
+
+    // Throws the exit a task asked for, if any.
+    void checkExit() {
+        ExitSignal signal = exit;
+        if (signal != null) {
+            throw signal;
+        }
+    }
+
+    // A task that failed before anything awaited it.
+    void taskFailed(Task task) {
+        failedTasks.add(task);
+    }
+
+    void taskAwaited(Task task) {
+        failedTasks.remove(task);
+    }
+
+    // Reports the failures of tasks that were never awaited. Tasks stopped
+    // by a limit or by exit() are not reported again.
+    void reportFailedTasks(PrintStream err) {
+        Task task;
+        while ((task = failedTasks.poll()) != null) {
+            if (failure == null && exit == null) {
+                err.println("[ERROR] Task failed: " + task.failure());
+            }
+        }
+    }
+
+    // Removes all limits, e.g. before the next statement in the REPL.
+    public void reset() {
+        budgeted = false;
+        timed = false;
+        cancelled = false;
+        failure = null;
+    }
+
+    // Accounts for the steps taken since the last check and returns how
+    // many more may be taken before the next one. Throws once a limit is hit.
+    int check(int steps) {
+        poll();
+        if (budgeted) {
+            long left = remainingSteps.addAndGet(-steps);
+            if (left < 0) {
+                throw stop("Step budget exceeded.");
+            }
+            // With none left, check again at the next step, which is over budget.
+            return (int) Math.max(1, Math.min(CHECK_INTERVAL, left));
+        }
+        return CHECK_INTERVAL;
+    }
+
+    // Throws if the run was cancelled, timed out, hit a limit earlier or
+    // was ended by a task's exit(). For blocking waits, which take no steps.
+    void poll() {
+        checkExit();
+        if (failure != null) {
+            throw stop(failure);
+        }
+        if (cancelled) {
+            throw stop("Execution cancelled.");
+        }
+        if (timed && System.nanoTime() - deadline >= 0) {
+            throw stop("Time limit exceeded.");
+        }
+    }
+
+    private RuntimeError stop(String message) {
+        failure = message;
+        return new RuntimeError(new Token(null, "NIL", "NIL", 0), message);
+    }
+}
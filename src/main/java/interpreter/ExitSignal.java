@@ -0,0 +1,13 @@
+package interpreter;
+
+// Thrown by exit() and turned into the process (or request) exit status at the top level.
+public class ExitSignal extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public final int status;
+
+    public ExitSignal(int status) {
+        super(null, null, false, false);  // Disable stack trace for performance.
+        this.status = status;
+    }
+}
@@ -0,0 +1,120 @@
+package interpreter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lexer.Token;
+
+/*
+    Batches appendFile() calls. Text appended to a file is
+    held until BATCH_SIZE characters are pending in all, the file is read
+    back through the file builtins, or the script's output is flushed (at
+    exit, before a command runs and before input blocks). Each flush is one
+    open, write and close per file, so a loop appending a line at a time
+    costs a few system calls per batch rather than per call, and no file is
+    held open between batches.
+
+    writeFile() itself is not batched: it replaces the contents at once, so
+    the file is never left truncated with its new text still pending.
+    appendFile() creates the file on its first call, so a bad path is
+    reported where it is written. Importing a module flushes everything, so
+    a script can write a module and then import it.
+*/
+public final class FileWriters {
+    private static final int BATCH_SIZE = 1 << 20;
+
+    private final Map<Path, Pending> pending = new LinkedHashMap<>();
+    private int pendingChars = 0;
+
+    private static final class Pending {
+        final StringBuilder text = new StringBuilder();
+    }
+
+    // Replaces the file's contents with text.
+    public synchronized void write(Path path, String text) throws IOException {
+        path = key(path);
+        Pending old = pending.remove(path);
+        if (old != null) {
+            pendingChars -= old.text.length();
+        }
+        writeOut(path, text, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    // Adds text to the end of the file, creating it if needed.
+    public synchronized void append(Path path, String text) throws IOException {
+        path = key(path);
+        Pending entry = pending.get(path);
+        if (entry == null) {
+            open(path, StandardOpenOption.APPEND).close();
+            entry = new Pending();
+            pending.put(path, entry);
+        }
+        entry.text.append(text);
+        pendingChars += text.length();
+        if (pendingChars >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    // Writes out anything pending for one file, before it is read.
+    public synchronized void flush(Path path) {
+        Pending entry = pending.remove(key(path));
+        if (entry != null) {
+            pendingChars -= entry.text.length();
+            writeOut(key(path), entry.text, StandardOpenOption.APPEND);
+        }
+    }
+
+    // Writes out everything pending. Text that cannot be written is dropped
+    // after the first error is reported, so a later flush does not repeat it.
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Path, Pending>> entries = new ArrayList<>(pending.entrySet());
+        pending.clear();
+        pendingChars = 0;
+        RuntimeError failure = null;
+        for (Map.Entry<Path, Pending> entry : entries) {
+            try {
+                writeOut(entry.getKey(), entry.getValue().text, StandardOpenOption.APPEND);
+            } catch (RuntimeError e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void writeOut(Path path, CharSequence text, OpenOption mode) {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(text));
+        try (FileChannel channel = open(path, mode)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Error writing file: " + e.getMessage());
+        }
+    }
+
+    // One entry per file however its path is spelled.
+    private static Path key(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private static FileChannel open(Path path, OpenOption mode) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+    }
+}
@@ -7,47 +7,151 @@ import interpreter.builtins.*;
 import parser.*;
 import lexer.*;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Interpreter {
 
-    private Environment environment = new Environment();
-    private final Map<String, Module> modules = new HashMap<>();
+    // The scope being executed; executeBlock swaps it, so it belongs to one
+    // thread. Concurrent tasks each run on a fork() with its own.
+    private Environment environment;
+    // Replaced only by reset(), between runs.
+    private Environment globals;
+    private Map<Path, Module> modules;
+    private ModulePrefetcher prefetcher;
+    private ScriptIo io;
+    private final ModuleLibrary library;
+    private ExecutionLimits limits;
+    // Steps since the last limits check, and how many are allowed before the next.
+    private int steps = 0;
+    private int stepsUntilCheck = 1;
+    // Set once this interpreter prints, imports or calls a builtin that is
+    // not pure; a module initialized without any of these can be snapshotted.
+    private boolean sideEffects = false;
+    // Released frames, reused by later blocks and calls whose scopes cannot
+    // escape, so ordinary loops and calls allocate no scopes.
+    private final Environment[] frames = new Environment[64];
+    private int freeFrames = 0;
 
     public Interpreter() {
-        // Define native/built-in functions
-        environment.define("clock", new ClockFunction());
-        environment.define("pava", new Pava());
-        environment.define("typeof", new TypeFunction());
-        environment.define("input", new InputFunction());
-        environment.define("err", new ErrFunction());
-        environment.define("string", new StringFunction());
-        environment.define("number", new NumberFunction());
-        environment.define("shell", new ShellFunction());
-        environment.define("length", new LengthFunction());
-        environment.define("exit", new ExitFunction());
-        environment.define("getAsciiCode", new GetAsciiCodeFunction());
-        environment.define("fromAsciiCode", new FromAsciiCodeFunction());
+        this(ScriptIo.SYSTEM);
     }
 
+    public Interpreter(ScriptIo io) {
+        this(io, null);
+    }
+
+    // An interpreter that imports modules from a shared library snapshot
+    // (null to locate and load them on each run).
+    public Interpreter(ScriptIo io, ModuleLibrary library) {
+        this(io, new Environment(), new ConcurrentHashMap<>(), new ModulePrefetcher(io), library, new ExecutionLimits());
+    }
+
+    private Interpreter(ScriptIo io, Environment globals, Map<Path, Module> modules, ModulePrefetcher prefetcher,
+            ModuleLibrary library, ExecutionLimits limits) {
+        // Native/built-in functions are resolved lazily by the global environment.
+        this.io = io;
+        this.globals = globals;
+        this.environment = globals;
+        this.modules = modules;
+        this.prefetcher = prefetcher;
+        this.library = library;
+        this.limits = limits;
+    }
+
+    // An interpreter for another thread: it shares this one's globals, modules
+    // and streams, but has its own current scope.
+    public Interpreter fork() {
+        return new Interpreter(io, globals, modules, prefetcher, library, limits);
+    }
+
+    // Forgets everything the last run defined or imported, so a pooled
+    // interpreter can run an unrelated script against new streams. Tasks
+    // still running from the last run keep the old state, not this one's.
+    public void reset(ScriptIo io) {
+        this.io = io;
+        this.globals = new Environment();
+        this.environment = globals;
+        this.modules = new ConcurrentHashMap<>();
+        this.prefetcher = new ModulePrefetcher(io);
+        this.limits = new ExecutionLimits();
+        this.steps = 0;
+        this.stepsUntilCheck = 1;
+    }
+
+    // The budget, deadline and cancellation flag for scripts run by this
+    // interpreter and everything it forks.
+    public ExecutionLimits limits() {
+        return limits;
+    }
+
+    // Counts a step (a loop iteration or function call) and checks the
+    // limits every so often.
+    void safepoint() {
+        if (++steps >= stepsUntilCheck) {
+            stepsUntilCheck = limits.check(steps);
+            steps = 0;
+        }
+    }
+
+    public ScriptIo io() {
+        return io;
+    }
+
+    // The global scope, for embedders that predefine variables.
+    public Environment globals() {
+        return globals;
+    }
+
+    // Runs a script, then reports the failures of tasks it spawned but
+    // never awaited. An exit() in a task ends it with that status.
     public void interpret(List<Stmt> statements) {
+        try {
+            run(statements);
+        } finally {
+            limits.reportFailedTasks(io.err());
+        }
+    }
+
+    private void run(List<Stmt> statements) {
+        if (library == null) {
+            prefetcher.prefetch(statements);
+        }
         try {
             for (Stmt stmt : statements) {
                 execute(stmt);
             }
+            limits.checkExit();
         } catch (RuntimeError error) {
             throw new RuntimeException(error.getMessage());
 
         }
     }
 
+    // Runs one top-level statement, for callers that stream statements in.
+    public void interpret(Stmt statement) {
+        try {
+            execute(statement);
+            limits.checkExit();
+        } catch (RuntimeError error) {
+            throw new RuntimeException(error.getMessage());
+        }
+    }
+
     private void execute(Stmt stmt) {
         stmt.accept(new Stmt.Visitor<Void>() {
             @Override
             public Void visitPrintStmt(Stmt.Print stmt) {
+                sideEffects = true;
                 Object value = evaluate(stmt.expression);
-                System.out.print(stringify(value));
+                OutputWriter out = io.out();
+                if (value instanceof String) {
+                    out.writeEscaped((String) value);
+                } else if (value instanceof Double && (Double) value == ((Double) value).intValue()) {
+                    out.writeInt(((Double) value).intValue());
+                } else {
+                    out.write(stringify(value));
+                }
                 return null;
             }
 
@@ -63,13 +167,22 @@ public class Interpreter {
                 if (stmt.initializer != null) {
                     value = evaluate(stmt.initializer);
                 }
-                environment.define(stmt.name.lexeme, value);
+                environment.define(stmt.name, value);
                 return null;
             }
 
             @Override
             public Void visitBlockStmt(Stmt.Block stmt) {
-                executeBlock(stmt.statements, new Environment(environment));
+                if (stmt.scopeEscapes) {
+                    executeBlock(stmt.statements, new Environment(environment));
+                    return null;
+                }
+                Environment frame = acquireFrame(environment);
+                try {
+                    executeBlock(stmt.statements, frame);
+                } finally {
+                    releaseFrame(frame);
+                }
                 return null;
             }
 
@@ -87,6 +200,7 @@ public class Interpreter {
             @Override
             public Void visitWhileStmt(Stmt.While stmt) { // New: while statement.
                 while (isTruthy(evaluate(stmt.condition))) {
+                    safepoint();
                     execute(stmt.body);
                 }
                 return null;
@@ -94,8 +208,8 @@ public class Interpreter {
 
             @Override
             public Void visitFunctionStmt(Stmt.Function stmt) {
-                PavaFunction function = new PavaFunction(stmt, environment);
-                environment.define(stmt.name.lexeme, function);
+                PavaFunction function = new PavaFunction(stmt, environment.capture(stmt));
+                environment.define(stmt.name, function);
                 return null;
             }
 
@@ -110,61 +224,58 @@ public class Interpreter {
 
             @Override
             public Void visitImportStmt(Stmt.Import stmt) {
-                // Extract the module path (remove quotes if necessary).
-                String path = stmt.path.literal.toString();
-                if (path.startsWith("\"") && path.endsWith("\"")) {
-                    path = path.substring(1, path.length() - 1);
+                sideEffects = true;
+                String path = ModuleRegistry.importName(stmt);
+                // The script may have just written the module.
+                io.files().flush();
+
+                // A shared library answers imports without touching the file system.
+                ModuleLibrary.Entry shared = library != null ? library.find(path, io.err()) : null;
+                // Joins the background load started when the script began, if
+                // any; the module is still located and checked here, as the
+                // script may have written it since.
+                if (library == null) {
+                    prefetcher.join(stmt);
                 }
-                // Append ".pava" if not present.
-                if (!path.endsWith(".pava")) {
-                    path = path + ".pava";
+                Path modulePath = library != null ? (shared != null ? shared.path : null)
+                        : ModuleRegistry.locate(path, io);
+                if (modulePath == null) {
+                    throw new RuntimeException("Module file not found: " + (path.endsWith(".pava") ? path : path + ".pava"));
                 }
 
-                // Attempt to find the module in /usr/share/pava first, then in the
-                // working directory.
-
-                // workaround for snap package
-                String libraryBaseDir = System.getenv("PAVA_LIB_DIR");
-                if (libraryBaseDir == null || libraryBaseDir.isEmpty()) {
-                    // Fallback to the original hardcoded path (optional)
-                    libraryBaseDir = "/usr/share/pava";
-                }
-
-                java.nio.file.Path modulePath = java.nio.file.Path.of(libraryBaseDir, path);
-                if (!java.nio.file.Files.exists(modulePath)) {
-                    modulePath = java.nio.file.Path.of(path);
-                    if (!java.nio.file.Files.exists(modulePath)) {
-                        throw new RuntimeException("Module file not found: " + path);
-                    }
-                }
-
-                String modulePathStr = modulePath.toString();
-
-                // Check module cache.
-                Module module;
-                if (modules.containsKey(modulePathStr)) {
-                    module = modules.get(modulePathStr);
+                // Each module runs once per script; later imports, nested ones
+                // included, bind the same instance.
+                Module module = modules.get(modulePath);
+                if (module != null) {
+                    ModuleRegistry.countInstanceHit();
                 } else {
                     try {
-                        String source = java.nio.file.Files.readString(modulePath);
-                        Lexer lexer = new Lexer(source);
-                        List<Token> tokens = lexer.scanTokens();
-                        Parser parser = new Parser(tokens);
-                        List<Stmt> moduleStatements = parser.parse();
-                        // Create a new interpreter for the module.
-                        Interpreter moduleInterpreter = new Interpreter();
-                        moduleInterpreter.interpret(moduleStatements);
+                        List<Stmt> moduleStatements = shared != null ? shared.statements
+                                : ModuleRegistry.statements(modulePath, io.err());
+                        // A module whose initialization was snapshotted is rebuilt without running it.
+                        ModuleSnapshot snapshot = ModuleSnapshot.of(modulePath, moduleStatements);
+                        Environment moduleEnvironment = snapshot != null ? snapshot.restore() : null;
+                        if (moduleEnvironment == null) {
+                            // Create a new interpreter for the module, sharing this run's modules.
+                            Interpreter moduleInterpreter = new Interpreter(io, new Environment(), modules, prefetcher, library, limits);
+                            moduleInterpreter.run(moduleStatements);
+                            moduleEnvironment = moduleInterpreter.environment;
+                            if (snapshot != null && !moduleInterpreter.sideEffects) {
+                                snapshot.save(moduleEnvironment);
+                            }
+                        }
                         // Assume the module file ends with an export statement.
                         // Retrieve the exported module name.
-                        Object exportNameObj = moduleInterpreter.environment
-                                .get(new Token(TokenType.IDENTIFIER, "__export__", null, 0));
+                        Object exportNameObj = moduleEnvironment.get("__export__", 0);
                         if (!(exportNameObj instanceof String)) {
                             throw new RuntimeException("Module did not export a valid name.");
                         }
                         String exportName = (String) exportNameObj;
                         // Create a Module object from the moduleInterpreter's environment.
-                        module = new Module(exportName, moduleInterpreter.environment);
-                        modules.put(path, module);
+                        module = new Module(exportName, moduleEnvironment);
+                        modules.put(modulePath, module);
+                    } catch (ExitSignal e) {
+                        throw e;
                     } catch (Exception e) {
                         throw new RuntimeException("Error loading module: " + e.getMessage());
                     }
@@ -178,13 +289,32 @@ public class Interpreter {
             public Void visitExportStmt(Stmt.Export stmt) {
                 // When executing an export, simply store the exported module name in a special
                 // variable.
-                environment.define("__export__", stmt.name.lexeme);
+                environment.define("__export__", stmt.name);
                 return null;
             }
 
         });
     }
 
+    // An empty scope inside enclosing for a block or call that no closure
+    // can capture. Hand it back to releaseFrame when the scope exits.
+    Environment acquireFrame(Environment enclosing) {
+        if (freeFrames == 0) {
+            return Environment.frame(enclosing);
+        }
+        Environment frame = frames[--freeFrames];
+        frames[freeFrames] = null;
+        frame.reuse(enclosing);
+        return frame;
+    }
+
+    void releaseFrame(Environment frame) {
+        frame.clear();
+        if (freeFrames < frames.length) {
+            frames[freeFrames++] = frame;
+        }
+    }
+
     public void executeBlock(List<Stmt> statements, Environment newEnv) {
         Environment previous = environment;
         try {
@@ -203,39 +333,39 @@ public class Interpreter {
             public Object visitBinaryExpr(Expr.Binary expr) {
                 Object left = evaluate(expr.left);
                 Object right = evaluate(expr.right);
-                switch (expr.operator.lexeme) {
-                    case "+":
+                switch (expr.operator) {
+                    case PLUS:
                         if (left instanceof Double && right instanceof Double) {
                             return (Double) left + (Double) right;
                         }
                         if (left instanceof String && right instanceof String) {
                             return (String) left + (String) right;
                         }
-                        throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
-                    case "-":
-                        checkNumberOperands(expr.operator, left, right);
+                        throw new RuntimeError(expr.line, "Operands must be two numbers or two strings.");
+                    case MINUS:
+                        checkNumberOperands(expr.line, left, right);
                         return (Double) left - (Double) right;
-                    case "*":
-                        checkNumberOperands(expr.operator, left, right);
+                    case STAR:
+                        checkNumberOperands(expr.line, left, right);
                         return (Double) left * (Double) right;
-                    case "/":
-                        checkNumberOperands(expr.operator, left, right);
+                    case SLASH:
+                        checkNumberOperands(expr.line, left, right);
                         return (Double) left / (Double) right;
-                    case ">":
-                        checkNumberOperands(expr.operator, left, right);
+                    case GREATER:
+                        checkNumberOperands(expr.line, left, right);
                         return (Double) left > (Double) right;
-                    case "<":
-                        checkNumberOperands(expr.operator, left, right);
+                    case LESS:
+                        checkNumberOperands(expr.line, left, right);
                         return (Double) left < (Double) right;
-                    case ">=":
-                        checkNumberOperands(expr.operator, left, right);
+                    case GREATER_EQUAL:
+                        checkNumberOperands(expr.line, left, right);
                         return (Double) left >= (Double) right;
-                    case "<=":
-                        checkNumberOperands(expr.operator, left, right);
+                    case LESS_EQUAL:
+                        checkNumberOperands(expr.line, left, right);
                         return (Double) left <= (Double) right;
-                    case "==":
+                    case EQUAL_EQUAL:
                         return isEqual(left, right);
-                    case "!=":
+                    case BANG_EQUAL:
                         return !isEqual(left, right);
                 }
                 return null;
@@ -254,11 +384,11 @@ public class Interpreter {
             @Override
             public Object visitUnaryExpr(Expr.Unary expr) {
                 Object right = evaluate(expr.right);
-                switch (expr.operator.lexeme) {
-                    case "-":
-                        checkNumberOperand(expr.operator, right);
+                switch (expr.operator) {
+                    case MINUS:
+                        checkNumberOperand(expr.line, right);
                         return -(Double) right;
-                    case "!":
+                    case BANG:
                         return !isTruthy(right);
                 }
                 return null;
@@ -266,24 +396,24 @@ public class Interpreter {
 
             @Override
             public Object visitVariableExpr(Expr.Variable expr) {
-                return environment.get(expr.name);
+                return environment.get(expr.name, expr.line);
             }
 
             @Override
             public Object visitAssignExpr(Expr.Assign expr) {
                 Object value = evaluate(expr.value);
-                environment.assign(expr.name, value);
+                environment.assign(expr.name, expr.line, value);
                 return value;
             }
 
             @Override
             public Object visitLogicalExpr(Expr.Logical expr) {
                 Object left = evaluate(expr.left);
-                if (expr.operator.lexeme.equals("or")) {
+                if (expr.operator == TokenType.OR) {
                     if (isTruthy(left))
                         return left;
                     return evaluate(expr.right);
-                } else if (expr.operator.lexeme.equals("and")) {
+                } else if (expr.operator == TokenType.AND) {
                     if (!isTruthy(left))
                         return left;
                     return evaluate(expr.right);
@@ -299,9 +429,12 @@ public class Interpreter {
                     arguments.add(evaluate(argument));
                 }
                 if (!(callee instanceof PavaCallable)) {
-                    throw new RuntimeError(expr.paren, "Can only call functions.");
+                    throw new RuntimeError(expr.line, "Can only call functions.");
                 }
                 PavaCallable function = (PavaCallable) callee;
+                if (!sideEffects && !(function instanceof PavaFunction) && !Builtins.isPure(function)) {
+                    sideEffects = true;
+                }
 
                 // Disable it for now as we introduce default values of functions
                 // Only check arity if the function reports non-negative arity.
@@ -316,12 +449,12 @@ public class Interpreter {
             public Object visitGetExpr(Expr.Get expr) {
                 Object object = evaluate(expr.object);
                 if (object instanceof Module) {
-                    return ((Module) object).env.get(expr.name);
+                    return ((Module) object).env.get(expr.name, expr.line);
                 }
                 if (object instanceof Environment) {
-                    return ((Environment) object).get(expr.name);
+                    return ((Environment) object).get(expr.name, expr.line);
                 }
-                throw new RuntimeError(expr.name, "Only modules have properties.");
+                throw new RuntimeError(expr.line, "Only modules have properties.");
             }
 
             @Override
@@ -387,8 +520,8 @@ public class Interpreter {
                     String newStr = new String(chars);
                     // If the array is stored in a variable, update its binding.
                     if (expr.array instanceof Expr.Variable) {
-                        Token varName = ((Expr.Variable) expr.array).name;
-                        environment.assign(varName, newStr);
+                        Expr.Variable variable = (Expr.Variable) expr.array;
+                        environment.assign(variable.name, variable.line, newStr);
                     }
                     return newStr;
                 } else {
@@ -412,19 +545,19 @@ public class Interpreter {
         });
     }
 
-    private void checkNumberOperand(lexer.Token operator, Object operand) {
+    private void checkNumberOperand(int line, Object operand) {
         if (operand instanceof Double)
             return;
-        throw new RuntimeError(operator, "Operand must be a number.");
+        throw new RuntimeError(line, "Operand must be a number.");
     }
 
-    private void checkNumberOperands(lexer.Token operator, Object left, Object right) {
+    private void checkNumberOperands(int line, Object left, Object right) {
         if (left instanceof Double && right instanceof Double)
             return;
-        throw new RuntimeError(operator, "Operands must be numbers.");
+        throw new RuntimeError(line, "Operands must be numbers.");
     }
 
-    private boolean isTruthy(Object object) {
+    public static boolean isTruthy(Object object) {
         if (object == null)
             return false;
         if (object instanceof Boolean)
@@ -449,44 +582,7 @@ public class Interpreter {
                 return String.valueOf((int) text);
             return String.valueOf(text);
         }
-        if (object instanceof String) {
-            return processEscapes((String) object);
-        }
         return object.toString();
     }
 
-    private String processEscapes(String s) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < s.length(); i++) {
-            char c = s.charAt(i);
-            if (c == '\\' && i + 1 < s.length()) {
-                char next = s.charAt(i + 1);
-                switch (next) {
-                    case 'n':
-                        sb.append('\n');
-                        i++; // skip next char
-                        break;
-                    case 't':
-                        sb.append('\t');
-                        i++;
-                        break;
-                    case '"':
-                        sb.append('"');
-                        i++;
-                        break;
-                    case '\\':
-                        sb.append('\\');
-                        i++;
-                        break;
-                    default:
-                        sb.append(c);
-                        break;
-                }
-            } else {
-                sb.append(c);
-            }
-        }
-        return sb.toString();
-    }
-
 }
@@ -0,0 +1,30 @@
+package interpreter;
+
+import java.util.function.Supplier;
+
+// Iterates over lines from a source that returns null at its end.
+public final class LineIterator extends PavaIterator {
+    private final Supplier<String> source;
+    private String pending;
+    private boolean done = false;
+
+    public LineIterator(Supplier<String> source) {
+        this.source = source;
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        if (pending == null && !done) {
+            pending = source.get();
+            done = pending == null;
+        }
+        return pending != null;
+    }
+
+    @Override
+    protected synchronized Object nextValue() {
+        String line = pending;
+        pending = null;
+        return line;
+    }
+}
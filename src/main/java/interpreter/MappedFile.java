@@ -0,0 +1,177 @@
+package interpreter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import lexer.Token;
+
+/*
+    Reading files for the file builtins. Files of MAP_THRESHOLD bytes or
+    more are memory-mapped instead of copied onto the heap, and lines()
+    maps a sliding window of at most WINDOW bytes (more only for a longer
+    line), so iterating over a file of any size uses bounded memory.
+
+    Files are decoded as UTF-8. Lines are split on \n, dropping a \r before
+    it, as standard input is.
+
+    Reading a mapping of a file that another process has since truncated
+    faults, which the JVM reports as an InternalError. Every read of a
+    mapped buffer catches it and throws a RuntimeError instead, so the
+    script gets an error rather than the interpreter crashing.
+*/
+public final class MappedFile {
+    static final long MAP_THRESHOLD = 1 << 20;
+    private static final long WINDOW = 16 << 20;
+    private static final Double[] BYTE_VALUES = new Double[256];
+
+    static {
+        for (int i = 0; i < BYTE_VALUES.length; i++) {
+            BYTE_VALUES[i] = (double) i;
+        }
+    }
+
+    private MappedFile() {
+    }
+
+    // The whole file as a string. Malformed UTF-8 is an I/O error, as in Files.readString.
+    public static String readString(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAP_THRESHOLD) {
+                return Files.readString(path);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to read as one string; use lines(): " + path);
+            }
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            try {
+                return StandardCharsets.UTF_8.newDecoder().decode(bytes).toString();
+            } catch (InternalError e) {
+                throw truncated(path);
+            }
+        }
+    }
+
+    // Up to length bytes from offset, as numbers from 0 to 255. Fewer near
+    // the end of the file, none past it.
+    public static List<Object> readBytes(Path path, long offset, int length) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int count = (int) Math.max(0, Math.min(length, channel.size() - offset));
+            ByteBuffer bytes;
+            if (count >= MAP_THRESHOLD) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, offset, count);
+            } else {
+                bytes = ByteBuffer.allocate(count);
+                while (bytes.hasRemaining() && channel.read(bytes, offset + bytes.position()) >= 0) {
+                    // Positional reads may return short.
+                }
+                bytes.flip();
+            }
+            List<Object> values = new ArrayList<>(bytes.remaining());
+            try {
+                while (bytes.hasRemaining()) {
+                    values.add(BYTE_VALUES[bytes.get() & 0xff]);
+                }
+            } catch (InternalError e) {
+                throw truncated(path);
+            }
+            return values;
+        }
+    }
+
+    // An iterator over the file's lines, read as it is stepped.
+    public static PavaIterator lines(Path path) throws IOException {
+        return new LineIterator(new Lines(path, Files.size(path)));
+    }
+
+    private static RuntimeError truncated(Path path) {
+        return new RuntimeError(new Token(null, "NIL", "NIL", 0),
+                "Error reading file: " + path + " was truncated while it was read.");
+    }
+
+    // Maps one window at a time, opening the file only while mapping, so an
+    // abandoned iterator holds no file descriptor.
+    private static final class Lines implements Supplier<String> {
+        private final Path path;
+        private long size;
+        private long windowStart = 0;
+        private long windowLength = WINDOW;
+        private MappedByteBuffer window;
+        private int position = 0;
+        private byte[] scratch = new byte[256];
+
+        Lines(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+
+        @Override
+        public String get() {
+            try {
+                return next();
+            } catch (InternalError e) {
+                window = null;
+                throw truncated(path);
+            }
+        }
+
+        private String next() {
+            while (true) {
+                int limit = window == null ? 0 : window.limit();
+                for (int i = position; i < limit; i++) {
+                    if (window.get(i) == '\n') {
+                        int end = i > position && window.get(i - 1) == '\r' ? i - 1 : i;
+                        String line = decode(position, end);
+                        position = i + 1;
+                        return line;
+                    }
+                }
+                long next = windowStart + position;
+                if (windowStart + limit >= size) {
+                    if (position == limit) {
+                        window = null;
+                        return null;
+                    }
+                    // Last line without a terminator.
+                    String line = decode(position, limit);
+                    position = limit;
+                    return line;
+                }
+                if (position == 0 && window != null) {
+                    // A line longer than the window.
+                    windowLength *= 2;
+                }
+                map(next);
+            }
+        }
+
+        private void map(long start) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                size = channel.size();
+                windowStart = start;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.max(0, Math.min(Math.min(windowLength, size - start), Integer.MAX_VALUE)));
+                position = 0;
+            } catch (IOException e) {
+                throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Error reading file: " + e.getMessage());
+            }
+        }
+
+        private String decode(int from, int to) {
+            int length = to - from;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            window.get(from, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package interpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import parser.Stmt;
+
+/*
+    A fixed set of parsed modules shared by many interpreters, as in a
+    script host. Each import name is located and parsed once, on first use,
+    and then answered from memory: unlike ModuleRegistry, later imports do
+    not check the file again, so edits on disk are not picked up. Modules
+    still execute per run, into that run's own Module instances.
+
+    Relative names are resolved against the library's working directory.
+*/
+public final class ModuleLibrary {
+    private final ScriptIo resolver;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public static final class Entry {
+        final Path path;
+        final List<Stmt> statements;
+
+        Entry(Path path, List<Stmt> statements) {
+            this.path = path;
+            this.statements = statements;
+        }
+    }
+
+    // workingDirectory may be null for the process's own.
+    public ModuleLibrary(Path workingDirectory) {
+        this.resolver = new ScriptIo(null, (PrintStream) null, null, workingDirectory);
+    }
+
+    // Loads modules ahead of the first script that imports them.
+    public void preload(String... names) {
+        for (String name : names) {
+            find(name, resolver.err());
+        }
+    }
+
+    // The module an import name refers to, or null if there is no such file.
+    // Lexical errors are reported to errors, and such modules are not kept.
+    Entry find(String name, PrintStream errors) {
+        Entry entry = entries.get(name);
+        if (entry != null) {
+            return entry;
+        }
+        Path path = ModuleRegistry.locate(name, resolver);
+        if (path == null) {
+            return null;
+        }
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        List<Stmt> statements;
+        try {
+            statements = ModuleRegistry.statements(path, new PrintStream(messages, true, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Error loading module: " + e.getMessage());
+        }
+        entry = new Entry(path, statements);
+        if (messages.size() > 0) {
+            errors.print(messages.toString(StandardCharsets.UTF_8));
+            return entry;
+        }
+        Entry existing = entries.putIfAbsent(name, entry);
+        return existing != null ? existing : entry;
+    }
+}
@@ -0,0 +1,116 @@
+package interpreter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import parser.Stmt;
+
+/*
+    Locates, reads and parses a script's imported modules on a thread pool
+    while the script's own statements run, warming ModuleRegistry's table of
+    parsed modules. The import itself still locates and loads its module
+    when it is reached, which finds the background parse if the file is
+    unchanged; a module the script created or rewrote before importing it is
+    loaded as it is then. Each module executes on the importing thread, so
+    side effects keep their source order. Lexical errors found in the
+    background are dropped: such modules are not kept in the registry, so
+    the import parses them again and reports them there.
+*/
+final class ModulePrefetcher {
+    // Scripts with fewer top-level imports load them inline, without starting the pool.
+    private static final int MIN_IMPORTS = 2;
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+    private static ExecutorService pool;
+
+    private final ScriptIo io;
+    private final Map<Stmt.Import, Future<?>> pending = new ConcurrentHashMap<>();
+    private volatile boolean active = false;
+
+    ModulePrefetcher(ScriptIo io) {
+        this.io = io;
+    }
+
+    // Starts loading the top-level imports among statements.
+    void prefetch(List<Stmt> statements) {
+        List<Stmt.Import> imports = imports(statements);
+        if (imports.isEmpty() || (!active && imports.size() < MIN_IMPORTS)) {
+            return;
+        }
+        active = true;
+        for (Stmt.Import stmt : imports) {
+            pending.computeIfAbsent(stmt, s -> pool().submit(() -> load(s)));
+        }
+    }
+
+    // Waits for the background load of an import statement, if one was
+    // started, so the import does not parse the module a second time.
+    void join(Stmt.Import stmt) {
+        Future<?> future = pending.remove(stmt);
+        if (future == null) {
+            return;
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    future.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            // The import loads the module itself and reports the failure.
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void load(Stmt.Import stmt) {
+        Path path = ModuleRegistry.locate(ModuleRegistry.importName(stmt), io);
+        if (path == null) {
+            return;
+        }
+        try {
+            List<Stmt> statements = ModuleRegistry.statements(path, DISCARD);
+            // Nested imports load in the background too.
+            prefetch(statements);
+        } catch (IOException | RuntimeException e) {
+            // The import loads the module again and reports the failure.
+        }
+    }
+
+    private static List<Stmt.Import> imports(List<Stmt> statements) {
+        List<Stmt.Import> imports = new ArrayList<>();
+        for (Stmt stmt : statements) {
+            if (stmt instanceof Stmt.Import) {
+                imports.add((Stmt.Import) stmt);
+            }
+        }
+        return imports;
+    }
+
+    private static synchronized ExecutorService pool() {
+        if (pool == null) {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            pool = Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "pava-module-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return pool;
+    }
+}
@@ -0,0 +1,146 @@
+package interpreter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import parser.AstCache;
+import parser.Stmt;
+
+/*
+    Process-wide table of parsed modules, keyed by canonical path and
+    checked against a hash of the file's contents, so every interpreter in
+    the process (nested module interpreters, server requests) shares one
+    AST per module version. Parsed statements are immutable; the modules'
+    runtime state lives in per-run Module instances held by the interpreter.
+
+    Set PAVA_MODULE_STATS=1 to print the counters when a script finishes.
+*/
+public final class ModuleRegistry {
+    private static final Map<Path, Parsed> parsed = new ConcurrentHashMap<>();
+
+    private static final AtomicLong instanceHits = new AtomicLong();
+    private static final AtomicLong astHits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private static final class Parsed {
+        final String hash;
+        final List<Stmt> statements;
+
+        Parsed(String hash, List<Stmt> statements) {
+            this.hash = hash;
+            this.statements = statements;
+        }
+    }
+
+    private ModuleRegistry() {
+    }
+
+    // The module path written in an import statement, without quotes.
+    static String importName(Stmt.Import stmt) {
+        String path = stmt.path;
+        if (path.startsWith("\"") && path.endsWith("\"")) {
+            path = path.substring(1, path.length() - 1);
+        }
+        return path;
+    }
+
+    // The module paths named by every import in statements, nested ones
+    // included, in source order. Walks function bodies, parsing lazy ones.
+    public static List<String> importNames(List<Stmt> statements) {
+        List<String> names = new ArrayList<>();
+        for (Stmt stmt : statements) {
+            collectImports(stmt, names);
+        }
+        return names;
+    }
+
+    private static void collectImports(Stmt stmt, List<String> names) {
+        if (stmt instanceof Stmt.Import) {
+            names.add(importName((Stmt.Import) stmt));
+        } else if (stmt instanceof Stmt.Block) {
+            names.addAll(importNames(((Stmt.Block) stmt).statements));
+        } else if (stmt instanceof Stmt.Function) {
+            names.addAll(importNames(((Stmt.Function) stmt).body()));
+        } else if (stmt instanceof Stmt.While) {
+            collectImports(((Stmt.While) stmt).body, names);
+        } else if (stmt instanceof Stmt.If) {
+            Stmt.If branch = (Stmt.If) stmt;
+            collectImports(branch.thenBranch, names);
+            if (branch.elseBranch != null) {
+                collectImports(branch.elseBranch, names);
+            }
+        }
+    }
+
+    // Finds an imported module: in $PAVA_LIB_DIR (default /usr/share/pava)
+    // first, then relative to the script's working directory. Returns the
+    // canonical path, or null if neither exists.
+    public static Path locate(String path, ScriptIo io) {
+        // Append ".pava" if not present.
+        if (!path.endsWith(".pava")) {
+            path = path + ".pava";
+        }
+
+        // workaround for snap package
+        String libraryBaseDir = System.getenv("PAVA_LIB_DIR");
+        if (libraryBaseDir == null || libraryBaseDir.isEmpty()) {
+            // Fallback to the original hardcoded path (optional)
+            libraryBaseDir = "/usr/share/pava";
+        }
+
+        Path modulePath = Path.of(libraryBaseDir, path);
+        if (!Files.exists(modulePath)) {
+            modulePath = io.resolve(path);
+            if (!Files.exists(modulePath)) {
+                return null;
+            }
+        }
+        try {
+            return modulePath.toRealPath();
+        } catch (IOException e) {
+            return modulePath.toAbsolutePath().normalize();
+        }
+    }
+
+    // The statements of the module at a canonical path, shared while the file
+    // is unchanged. Function bodies are parsed when first called, so a large
+    // library costs little more to import than the functions a script uses.
+    public static List<Stmt> statements(Path canonical, PrintStream errors) throws IOException {
+        byte[] bytes = Files.readAllBytes(canonical);
+        String hash = AstCache.hash(bytes);
+        Parsed entry = parsed.get(canonical);
+        if (entry != null && entry.hash.equals(hash)) {
+            astHits.incrementAndGet();
+            return entry.statements;
+        }
+        misses.incrementAndGet();
+        AstCache.Result result = AstCache.load(bytes, errors, true);
+        if (result.errorCode == 0) {
+            parsed.put(canonical, new Parsed(hash, result.statements));
+        }
+        return result.statements;
+    }
+
+    // The source hash the given statements were parsed from, or null if they
+    // are not the registry's current entry for the path.
+    static String sourceHash(Path canonical, List<Stmt> statements) {
+        Parsed entry = parsed.get(canonical);
+        return entry != null && entry.statements == statements ? entry.hash : null;
+    }
+
+    static void countInstanceHit() {
+        instanceHits.incrementAndGet();
+    }
+
+    public static String stats() {
+        return "modules: " + instanceHits.get() + " reused in-run, " + astHits.get() + " shared ASTs, "
+                + misses.get() + " loaded";
+    }
+}
@@ -0,0 +1,233 @@
+package interpreter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import interpreter.builtins.Builtins;
+import parser.AstCache;
+import parser.Stmt;
+
+/*
+    Initialized module state saved to disk (.pavas files in the AST cache
+    directory). Importing a module runs its top-level statements; when that
+    run had no side effects (no print, no import, only pure builtins), the
+    module's variables are saved, and later imports of the same source
+    rebuild them instead of running the statements again.
+
+    Numbers, strings, booleans and arrays are stored by value, keeping arrays
+    that are shared or contain themselves shared. Functions are stored as the
+    index of their declaration among the module's top-level statements, and
+    are rebuilt with the restored scope as their closure. A module holding
+    anything else (a closure over an inner scope, a builtin under another
+    name) is not saved. Entries are keyed by the module's source hash, so
+    editing the module or upgrading pava misses the old entry.
+*/
+final class ModuleSnapshot {
+    private static final int MAGIC = 0x50415653; // "PAVS"
+    private static final int FORMAT = 1;
+
+    // Value tags; REFERENCE points back at an array or function read earlier.
+    private static final int NIL = 0, FALSE = 1, TRUE = 2, NUMBER = 3, STRING = 4, ARRAY = 5,
+            FUNCTION = 6, REFERENCE = 7;
+
+    private final Path entry;
+    private final String key;
+    private final List<Stmt> statements;
+
+    private ModuleSnapshot(Path entry, String key, List<Stmt> statements) {
+        this.entry = entry;
+        this.key = key;
+        this.statements = statements;
+    }
+
+    // The snapshot slot for a module parsed into statements, or null when
+    // caching is off or the statements did not come from the registry.
+    static ModuleSnapshot of(Path canonical, List<Stmt> statements) {
+        Path dir = AstCache.cacheDir();
+        String key = dir != null ? ModuleRegistry.sourceHash(canonical, statements) : null;
+        if (key == null) {
+            return null;
+        }
+        return new ModuleSnapshot(dir.resolve(key + ".pavas"), key, statements);
+    }
+
+    // The module's variables rebuilt from the saved entry, or null if there
+    // is none or it cannot be read.
+    Environment restore() {
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try (InputStream file = Files.newInputStream(entry);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(file, 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || !in.readUTF().equals(key)) {
+                return null;
+            }
+            Environment environment = new Environment();
+            List<Object> seen = new ArrayList<>();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                environment.define(name, read(in, environment, seen));
+            }
+            if (in.read() != -1) {
+                return null;
+            }
+            return environment;
+        } catch (IOException | RuntimeException e) {
+            // Unreadable entry: run the module and overwrite it.
+            return null;
+        }
+    }
+
+    private Object read(DataInputStream in, Environment environment, List<Object> seen) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NIL:
+                return null;
+            case FALSE:
+                return false;
+            case TRUE:
+                return true;
+            case NUMBER:
+                return in.readDouble();
+            case STRING: {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            case ARRAY: {
+                int size = in.readInt();
+                List<Object> array = new ArrayList<>(size);
+                seen.add(array);
+                for (int i = 0; i < size; i++) {
+                    array.add(read(in, environment, seen));
+                }
+                return array;
+            }
+            case FUNCTION: {
+                Stmt declaration = statements.get(in.readInt());
+                if (!(declaration instanceof Stmt.Function)) {
+                    throw new IOException("Not a function declaration.");
+                }
+                PavaFunction function = new PavaFunction((Stmt.Function) declaration, environment);
+                seen.add(function);
+                return function;
+            }
+            case REFERENCE:
+                return seen.get(in.readInt());
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    // Saves the variables of a module whose initialization had no side
+    // effects. Does nothing if one of them cannot be stored; failing to
+    // write is ignored, as the snapshot is an optimization only.
+    void save(Environment environment) {
+        Map<Stmt, Integer> declarations = new IdentityHashMap<>();
+        for (int i = 0; i < statements.size(); i++) {
+            if (statements.get(i) instanceof Stmt.Function) {
+                declarations.put(statements.get(i), i);
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeUTF(key);
+            Map<String, Object> bindings = environment.bindings();
+            // Builtins looked up during initialization are cached in the
+            // module's scope; lookups find them again without the snapshot.
+            bindings.entrySet().removeIf(binding -> binding.getValue() != null
+                    && binding.getValue() == Builtins.lookup(binding.getKey()));
+            out.writeInt(bindings.size());
+            Map<Object, Integer> seen = new IdentityHashMap<>();
+            for (Map.Entry<String, Object> binding : bindings.entrySet()) {
+                out.writeUTF(binding.getKey());
+                if (!write(out, binding.getValue(), environment, declarations, seen)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            return;
+        }
+
+        Path temp = null;
+        try {
+            Files.createDirectories(entry.getParent());
+            temp = Files.createTempFile(entry.getParent(), key, ".tmp");
+            Files.write(temp, bytes.toByteArray());
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+        } catch (IOException | RuntimeException e) {
+            // The snapshot is an optimization only.
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    // Writes one value; returns false if it cannot be stored.
+    private static boolean write(DataOutputStream out, Object value, Environment environment,
+            Map<Stmt, Integer> declarations, Map<Object, Integer> seen) throws IOException {
+        if (value == null) {
+            out.writeByte(NIL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(NUMBER);
+            out.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            out.writeByte(STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (seen.containsKey(value)) {
+            out.writeByte(REFERENCE);
+            out.writeInt(seen.get(value));
+        } else if (value instanceof List) {
+            List<?> array = (List<?>) value;
+            seen.put(value, seen.size());
+            out.writeByte(ARRAY);
+            out.writeInt(array.size());
+            for (Object element : array) {
+                if (!write(out, element, environment, declarations, seen)) {
+                    return false;
+                }
+            }
+        } else if (value instanceof PavaFunction) {
+            PavaFunction function = (PavaFunction) value;
+            Integer index = declarations.get(function.declaration());
+            if (index == null || function.closure() != environment) {
+                return false;
+            }
+            seen.put(value, seen.size());
+            out.writeByte(FUNCTION);
+            out.writeInt(index);
+        } else {
+            return false;
+        }
+        return true;
+    }
+}
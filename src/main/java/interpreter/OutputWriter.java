@@ -0,0 +1,211 @@
+package interpreter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/*
+    Buffered writer behind print. Characters collect in a large buffer and
+    are encoded to bytes once, when the buffer fills or is flushed, so a
+    print-heavy script makes a few large writes instead of one synchronized,
+    auto-flushing System.out call per statement. Pava string escapes are
+    decoded straight into the buffer by writeEscaped.
+
+    Given a Writer instead of a stream, as for an embedding's script
+    context, the buffered characters are passed on without encoding.
+
+    ScriptIo flushes it on exit and before input, errors and shell commands.
+    Methods are synchronized because concurrent tasks share one writer.
+*/
+public final class OutputWriter extends Writer {
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final OutputStream target;
+    private final Writer charTarget;
+    private final CharsetEncoder encoder;
+    private final char[] chars = new char[BUFFER_SIZE];
+    private final CharBuffer charView = CharBuffer.wrap(chars);
+    private final ByteBuffer bytes;
+    private int count = 0;
+
+    public OutputWriter(OutputStream target, Charset charset) {
+        this.target = target;
+        this.charTarget = null;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate((int) (BUFFER_SIZE * encoder.maxBytesPerChar()) + 16);
+    }
+
+    public OutputWriter(Writer target) {
+        this.target = null;
+        this.charTarget = target;
+        this.encoder = null;
+        this.bytes = null;
+    }
+
+    @Override
+    public synchronized void write(String s) {
+        write(s, 0, s.length());
+    }
+
+    @Override
+    public synchronized void write(String s, int offset, int length) {
+        while (length > 0) {
+            if (count == chars.length) {
+                flushBuffer();
+            }
+            int n = Math.min(length, chars.length - count);
+            s.getChars(offset, offset + n, chars, count);
+            count += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    public synchronized void write(char[] source, int offset, int length) {
+        while (length > 0) {
+            if (count == chars.length) {
+                flushBuffer();
+            }
+            int n = Math.min(length, chars.length - count);
+            System.arraycopy(source, offset, chars, count, n);
+            count += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    public synchronized void write(int c) {
+        if (count == chars.length) {
+            flushBuffer();
+        }
+        chars[count++] = (char) c;
+    }
+
+    // Writes a string with its \n, \t, \" and \\ escapes decoded.
+    public synchronized void writeEscaped(String s) {
+        int length = s.length();
+        if (s.indexOf('\\') < 0) {
+            write(s, 0, length);
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < length) {
+                int escaped = escape(s.charAt(i + 1));
+                if (escaped >= 0) {
+                    c = (char) escaped;
+                    i++; // skip next char
+                }
+            }
+            if (count == chars.length) {
+                flushBuffer();
+            }
+            chars[count++] = c;
+        }
+    }
+
+    // The character a backslash followed by next stands for, or -1.
+    private static int escape(char next) {
+        switch (next) {
+            case 'n': return '\n';
+            case 't': return '\t';
+            case '"': return '"';
+            case '\\': return '\\';
+            default: return -1;
+        }
+    }
+
+    // Writes the decimal digits of an int without creating a String.
+    public synchronized void writeInt(int value) {
+        if (chars.length - count < 11) {
+            flushBuffer();
+        }
+        if (value == Integer.MIN_VALUE) {
+            write("-2147483648");
+            return;
+        }
+        if (value < 0) {
+            chars[count++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = count + digits - 1; i >= count; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        count += digits;
+    }
+
+    @Override
+    public synchronized void flush() {
+        flushBuffer();
+        try {
+            if (charTarget != null) {
+                charTarget.flush();
+                return;
+            }
+            target.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void flushBuffer() {
+        if (count == 0) {
+            return;
+        }
+        if (charTarget != null) {
+            try {
+                charTarget.write(chars, 0, count);
+                count = 0;
+            } catch (IOException e) {
+                count = 0;
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+        charView.clear().limit(count);
+        try {
+            while (true) {
+                CoderResult result = encoder.encode(charView, bytes, false);
+                drain();
+                if (result.isUnderflow()) {
+                    break;
+                }
+            }
+            // Keep a trailing high surrogate for the next write.
+            int left = charView.remaining();
+            System.arraycopy(chars, charView.position(), chars, 0, left);
+            count = left;
+        } catch (IOException e) {
+            count = 0;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void drain() throws IOException {
+        if (bytes.position() > 0) {
+            target.write(bytes.array(), 0, bytes.position());
+            bytes.clear();
+        }
+    }
+}
@@ -12,6 +12,14 @@ public class PavaFunction implements PavaCallable {
         this.closure = closure;
     }
 
+    Stmt.Function declaration() {
+        return declaration;
+    }
+
+    Environment closure() {
+        return closure;
+    }
+
     @Override
     public int arity() {
         return declaration.params.size(); // For no-arg functions, this is 0.
@@ -19,36 +27,44 @@ public class PavaFunction implements PavaCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment environment = new Environment(closure);
+        interpreter.safepoint();
         int paramCount = declaration.params.size();
         if (arguments.size() > paramCount) {
-            throw new RuntimeError(declaration.name, "Too many arguments.");
+            throw new RuntimeError(declaration.line, "Too many arguments.");
         }
-        // For each parameter, bind the passed argument or, if missing, evaluate the
-        // default.
-        for (int i = 0; i < paramCount; i++) {
-            Stmt.Function.Parameter param = declaration.params.get(i);
-            Object value;
-            if (i < arguments.size()) {
-                value = arguments.get(i);
-            } else {
-                if (param.defaultValue == null) {
-                    throw new RuntimeError(param.name, "Missing argument for parameter '" + param.name.lexeme + "'.");
+        // Unless a fun declared in the body can capture it, the call's scope
+        // is a pooled frame.
+        boolean pooled = !declaration.scopeEscapes();
+        Environment environment = pooled ? interpreter.acquireFrame(closure) : new Environment(closure);
+        try {
+            // For each parameter, bind the passed argument or, if missing, evaluate the
+            // default.
+            for (int i = 0; i < paramCount; i++) {
+                Stmt.Function.Parameter param = declaration.params.get(i);
+                Object value;
+                if (i < arguments.size()) {
+                    value = arguments.get(i);
+                } else {
+                    if (param.defaultValue == null) {
+                        throw new RuntimeError(param.line, "Missing argument for parameter '" + param.name + "'.");
+                    }
+                    value = interpreter.evaluate(param.defaultValue);
                 }
-                value = interpreter.evaluate(param.defaultValue);
+                environment.define(param.name, value);
             }
-            environment.define(param.name.lexeme, value);
-        }
-        try {
-            interpreter.executeBlock(declaration.body, environment);
+            interpreter.executeBlock(declaration.body(), environment);
         } catch (Return returnValue) {
             return returnValue.value;
+        } finally {
+            if (pooled) {
+                interpreter.releaseFrame(environment);
+            }
         }
         return null;
     }
 
     @Override
     public String toString() {
-        return "<fn " + declaration.name.lexeme + ">";
+        return "<fn " + declaration.name + ">";
     }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package interpreter;
+
+import lexer.Token;
+
+/*
+    A lazy sequence of values, stepped with the hasNext() and next()
+    builtins. Builtins that stream input (stdin lines, file lines, process
+    output) return these instead of building an array up front.
+*/
+public abstract class PavaIterator {
+    public abstract boolean hasNext();
+
+    // The next value; only called when hasNext() is true.
+    protected abstract Object nextValue();
+
+    public synchronized Object next() {
+        if (!hasNext()) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Iterator has no more values.");
+        }
+        return nextValue();
+    }
+
+    @Override
+    public String toString() {
+        return "<iterator>";
+    }
+}
@@ -0,0 +1,165 @@
+package interpreter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import lexer.Token;
+
+/*
+    A running subprocess, as returned by exec().
+    Its stdout and stderr are drained by background threads into channels
+    of BUFFERED_LINES lines. Once a channel is full its thread stops reading
+    until the script catches up, so a process whose output is never read
+    stalls on a full pipe instead of filling the heap. The child's stdin is
+    closed at start.
+*/
+public final class PavaProcess {
+    static final int BUFFERED_LINES = 256;
+
+    private final Process process;
+    private final Channel stdout;
+    private final Channel stderr;
+
+    private PavaProcess(Process process, Channel stdout, Channel stderr) {
+        this.process = process;
+        this.stdout = stdout;
+        this.stderr = stderr;
+    }
+
+    // Starts a command in the given directory (null for the current one).
+    // With keepStderr false the process's stderr is discarded.
+    public static PavaProcess start(List<String> command, Path directory, boolean keepStderr) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        if (directory != null) {
+            builder.directory(directory.toFile());
+        }
+        if (!keepStderr) {
+            builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        }
+        Process process = builder.start();
+        process.getOutputStream().close();
+        Channel stdout = pump(process.getInputStream(), "pava-process-stdout");
+        Channel stderr = keepStderr ? pump(process.getErrorStream(), "pava-process-stderr") : closedChannel();
+        return new PavaProcess(process, stdout, stderr);
+    }
+
+    // Splits a command line on whitespace, as Runtime.exec(String) does.
+    public static List<String> split(String command) {
+        StringTokenizer tokens = new StringTokenizer(command);
+        List<String> words = new ArrayList<>();
+        while (tokens.hasMoreTokens()) {
+            words.add(tokens.nextToken());
+        }
+        return words;
+    }
+
+    // Waiting for the next line polls limits, so a cancelled script stops.
+    public PavaIterator stdoutLines(ExecutionLimits limits) {
+        return new LineIterator(() -> (String) stdout.receive(limits));
+    }
+
+    public PavaIterator stderrLines(ExecutionLimits limits) {
+        return new LineIterator(() -> (String) stderr.receive(limits));
+    }
+
+    // Waits up to timeoutMillis (forever if negative) and returns the exit
+    // code, or null if the process is still running. Polls limits while it
+    // waits, so a cancelled script stops.
+    public Integer waitFor(long timeoutMillis, ExecutionLimits limits) {
+        try {
+            WaitBlocker blocker = new WaitBlocker(process, timeoutMillis, limits);
+            ForkJoinPool.managedBlock(blocker);
+            return blocker.exited ? process.exitValue() : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Interrupted while waiting for a process.");
+        }
+    }
+
+    // Asks the process to terminate. Closing the channels releases a pump
+    // blocked on a full one; lines already buffered can still be read.
+    public void kill() {
+        process.destroy();
+        stdout.close();
+        stderr.close();
+    }
+
+    private static Channel pump(InputStream stream, String name) {
+        Channel lines = new Channel(BUFFERED_LINES);
+        Thread thread = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, Charset.defaultCharset()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.send(line);
+                }
+            } catch (IOException e) {
+                // The stream ends with the process.
+            } catch (RuntimeError e) {
+                // kill() closed the channel; the rest of the output is dropped.
+            } finally {
+                lines.close();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return lines;
+    }
+
+    private static Channel closedChannel() {
+        Channel channel = new Channel(0);
+        channel.close();
+        return channel;
+    }
+
+    // Lets a task waiting on a process free up its ForkJoinPool worker.
+    private static final class WaitBlocker implements ForkJoinPool.ManagedBlocker {
+        private final Process process;
+        private final long timeoutMillis;
+        private final ExecutionLimits limits;
+        boolean exited = false;
+
+        WaitBlocker(Process process, long timeoutMillis, ExecutionLimits limits) {
+            this.process = process;
+            this.timeoutMillis = timeoutMillis;
+            this.limits = limits;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (true) {
+                long wait = ExecutionLimits.POLL_MILLIS;
+                if (timeoutMillis >= 0) {
+                    wait = Math.min(wait, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                }
+                exited = process.waitFor(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+                if (exited || timeoutMillis >= 0 && System.nanoTime() - deadline >= 0) {
+                    return true;
+                }
+                limits.poll();
+            }
+        }
+
+        @Override
+        public boolean isReleasable() {
+            if (!process.isAlive()) {
+                exited = true;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<process " + process.pid() + ">";
+    }
+}
@@ -3,9 +3,13 @@ package interpreter;
 import lexer.Token;
 
 public class RuntimeError extends RuntimeException {
-    public final Token token;
+    public final int line;
     public RuntimeError(Token token, String message) {
-        super( "[line "+token.getLine()+ "]" + message);
-        this.token = token;
+        this(token.getLine(), message);
+    }
+
+    public RuntimeError(int line, String message) {
+        super( "[line "+line+ "]" + message);
+        this.line = line;
     }
 }
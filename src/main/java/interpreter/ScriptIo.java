@@ -0,0 +1,164 @@
+package interpreter;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/*
+    The standard streams and working directory a script runs against.
+    Command-line runs use the process's own (SYSTEM); the server gives each
+    request the client's streams and current directory instead. Standard
+    output is buffered (see OutputWriter), as are file writes (see
+    FileWriters); streams passed in are written as UTF-8.
+*/
+public final class ScriptIo {
+    public static final ScriptIo SYSTEM = new ScriptIo(null, (PrintStream) null, null, null);
+
+    // Shared by every interpreter reading the process's stdin, so buffered input is never lost.
+    private static StdinReader systemStdin;
+    private static boolean exitFlushRegistered = false;
+
+    private final InputStream in;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final Path workingDirectory;
+    private final boolean followsSystemOut;
+    private final FileWriters files = new FileWriters();
+    private StdinReader stdin;
+    private volatile OutputWriter writer;
+    private volatile PrintStream writerTarget;
+
+    // Null streams stand for System.in/out/err, looked up on each use; a null
+    // working directory is the process's own.
+    public ScriptIo(InputStream in, PrintStream out, PrintStream err, Path workingDirectory) {
+        this.in = in;
+        this.out = out;
+        this.err = err;
+        this.workingDirectory = workingDirectory;
+        this.followsSystemOut = out == null;
+    }
+
+    // Standard output written as characters to a Writer, for embedders
+    // whose output sink is not a byte stream.
+    public ScriptIo(InputStream in, Writer out, PrintStream err, Path workingDirectory) {
+        this.in = in;
+        this.out = null;
+        this.err = err;
+        this.workingDirectory = workingDirectory;
+        this.followsSystemOut = false;
+        this.writer = new OutputWriter(out);
+    }
+
+    // The buffered writer for the script's standard output.
+    public OutputWriter out() {
+        OutputWriter w = writer;
+        if (w != null && (!followsSystemOut || writerTarget == System.out)) {
+            return w;
+        }
+        return newWriter();
+    }
+
+    // Writes out any buffered standard output and batched file writes.
+    public void flush() {
+        flushOutput();
+        files.flush();
+    }
+
+    // Batched writes from writeFile() and appendFile(). The process's own
+    // are also written out when the JVM exits, however it exits.
+    public FileWriters files() {
+        if (this == SYSTEM) {
+            registerExitFlush();
+        }
+        return files;
+    }
+
+    private static synchronized void registerExitFlush() {
+        if (!exitFlushRegistered) {
+            exitFlushRegistered = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    SYSTEM.files.flush();
+                } catch (RuntimeException e) {
+                    System.err.println("[ERROR] " + e.getMessage());
+                }
+            }, "pava-file-flush"));
+        }
+    }
+
+    // Standard error, after flushing standard output so the two stay in order.
+    public PrintStream err() {
+        flushOutput();
+        return err != null ? err : System.err;
+    }
+
+    public Path workingDirectory() {
+        return workingDirectory;
+    }
+
+    // Resolves a relative path against the script's working directory.
+    public Path resolve(String path) {
+        return workingDirectory != null ? workingDirectory.resolve(path) : Path.of(path);
+    }
+
+    // Reads one line of input, or returns null at end of input. Pending
+    // output such as a prompt is flushed first if the read has to wait.
+    public String readLine() {
+        return stdin().readLine();
+    }
+
+    // The script's standard input.
+    public StdinReader stdin() {
+        if (in == null) {
+            synchronized (ScriptIo.class) {
+                if (systemStdin == null) {
+                    systemStdin = new StdinReader(System.in, Charset.defaultCharset(), SYSTEM::flush);
+                }
+                return systemStdin;
+            }
+        }
+        synchronized (this) {
+            if (stdin == null) {
+                stdin = new StdinReader(in, StandardCharsets.UTF_8, this::flush);
+            }
+            return stdin;
+        }
+    }
+
+    private void flushOutput() {
+        OutputWriter w = writer;
+        if (w != null) {
+            w.flush();
+        }
+    }
+
+    // The process's stdout can be swapped with System.setOut, so the system
+    // writer follows it; output buffered for the old stream goes there first.
+    private synchronized OutputWriter newWriter() {
+        PrintStream target = out != null ? out : System.out;
+        if (writer != null && writerTarget == target) {
+            return writer;
+        }
+        if (writer != null) {
+            writer.flush();
+        }
+        writer = new OutputWriter(target, out != null ? StandardCharsets.UTF_8 : stdoutCharset());
+        writerTarget = target;
+        return writer;
+    }
+
+    private static Charset stdoutCharset() {
+        String encoding = System.getProperty("sun.stdout.encoding");
+        try {
+            if (encoding != null) {
+                return Charset.forName(encoding);
+            }
+        } catch (IllegalArgumentException e) {
+            // Fall through to the default.
+        }
+        return Charset.defaultCharset();
+    }
+}
@@ -0,0 +1,231 @@
+package interpreter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+    Standard input for scripts: a plain byte buffer over the stream. Lines
+    are split on \n (dropping a \r before it) and decoded one at a time, and
+    words and numbers are scanned straight from the bytes, so bulk input
+    never goes through Scanner's regular expressions or per-character Readers.
+
+    Before a read that would block, the beforeBlock hook runs; ScriptIo uses
+    it to flush standard output so prompts appear, without flushing on every
+    line of piped input.
+*/
+public final class StdinReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final InputStream in;
+    private final Charset charset;
+    private final Runnable beforeBlock;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    public StdinReader(InputStream in, Charset charset, Runnable beforeBlock) {
+        this.in = in;
+        this.charset = charset;
+        this.beforeBlock = beforeBlock;
+    }
+
+    // The next line without its terminator, or null at end of input.
+    public synchronized String readLine() {
+        int scanFrom = position;
+        while (true) {
+            for (int i = scanFrom; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    int end = i > position && buffer[i - 1] == '\r' ? i - 1 : i;
+                    String line = decode(position, end);
+                    position = i + 1;
+                    return line;
+                }
+            }
+            int scanned = limit - position;
+            if (!fill()) {
+                if (position == limit) {
+                    return null;
+                }
+                // Last line without a terminator.
+                String line = decode(position, limit);
+                position = limit;
+                return line;
+            }
+            scanFrom = position + scanned;
+        }
+    }
+
+    // Everything left on the input.
+    public synchronized String readAll() {
+        while (fill()) {
+            // Read to the end.
+        }
+        String rest = decode(position, limit);
+        position = limit;
+        return rest;
+    }
+
+    // The next whitespace-separated word, or null at end of input.
+    public synchronized String readWord() {
+        int end = nextToken();
+        if (end < 0) {
+            return null;
+        }
+        String word = decode(position, end);
+        position = end;
+        return word;
+    }
+
+    // The next whitespace-separated word as a number, or null at end of
+    // input. Throws NumberFormatException, after consuming the word, if it
+    // is not a number.
+    public synchronized Double readNumber() {
+        int end = nextToken();
+        if (end < 0) {
+            return null;
+        }
+        int start = position;
+        position = end;
+        return parseNumber(buffer, start, end);
+    }
+
+    // Skips whitespace and returns the end of the token starting at position, or -1 at end of input.
+    private int nextToken() {
+        while (true) {
+            while (position < limit && isSpace(buffer[position])) {
+                position++;
+            }
+            if (position < limit) {
+                break;
+            }
+            if (!fill()) {
+                return -1;
+            }
+        }
+        int end = position;
+        while (true) {
+            while (end < limit && !isSpace(buffer[end])) {
+                end++;
+            }
+            if (end < limit) {
+                return end;
+            }
+            int scanned = end - position;
+            if (!fill()) {
+                return limit;
+            }
+            end = position + scanned;
+        }
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f' || b == 0x0b;
+    }
+
+    // Decimal numbers with few digits are assembled exactly from their
+    // digits; anything longer or unusual goes through Double.parseDouble.
+    static double parseNumber(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        while (i < to && bytes[i] >= '0' && bytes[i] <= '9') {
+            mantissa = mantissa * 10 + (bytes[i++] - '0');
+            digits++;
+        }
+        if (i < to && bytes[i] == '.') {
+            i++;
+            while (i < to && bytes[i] >= '0' && bytes[i] <= '9') {
+                mantissa = mantissa * 10 + (bytes[i++] - '0');
+                digits++;
+                exponent--;
+            }
+        }
+        if (digits > 0 && i < to && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            int j = i + 1;
+            boolean negativeExponent = false;
+            if (j < to && (bytes[j] == '-' || bytes[j] == '+')) {
+                negativeExponent = bytes[j] == '-';
+                j++;
+            }
+            int e = 0;
+            int exponentDigits = 0;
+            while (j < to && bytes[j] >= '0' && bytes[j] <= '9' && exponentDigits < 6) {
+                e = e * 10 + (bytes[j++] - '0');
+                exponentDigits++;
+            }
+            if (exponentDigits > 0) {
+                exponent += negativeExponent ? -e : e;
+                i = j;
+            }
+        }
+        if (digits > 0 && i == to && digits <= 15 && exponent >= -22 && exponent <= 22) {
+            // Both operands are exact, so one multiply or divide rounds correctly.
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        // parseDouble would also accept hex, "NaN" and suffixes such as "1d".
+        for (int j = from; j < to; j++) {
+            byte b = bytes[j];
+            if (!(b >= '0' && b <= '9') && b != '.' && b != 'e' && b != 'E' && b != '-' && b != '+') {
+                digits = 0;
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+        }
+        try {
+            return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+        }
+    }
+
+    private String decode(int from, int to) {
+        return new String(buffer, from, to - from, charset);
+    }
+
+    // Reads more input after the unread bytes, compacting or growing the
+    // buffer as needed. Returns false at end of input.
+    private boolean fill() {
+        if (eof) {
+            return false;
+        }
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        try {
+            if (in.available() <= 0) {
+                beforeBlock.run();
+            }
+            int n = in.read(buffer, limit, buffer.length - limit);
+            if (n < 0) {
+                eof = true;
+                return false;
+            }
+            limit += n;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package interpreter;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lexer.Token;
+
+/*
+    A Pava function running concurrently, as returned by spawn().
+    Tasks run on virtual threads when the JVM has them (Java 21+) and on a
+    ForkJoinPool sized to the machine otherwise. Each task executes on its
+    own fork() of the spawning interpreter, sharing globals but not scopes.
+*/
+public final class Task {
+    private static final ExecutorService executor = createExecutor();
+
+    private final CompletableFuture<Object> future;
+    private final ExecutionLimits limits;
+    private boolean awaited = false; // Guarded by this.
+
+    private Task(CompletableFuture<Object> future, ExecutionLimits limits) {
+        this.future = future;
+        this.limits = limits;
+    }
+
+    // An exit() in the task ends the whole run, as it would on the main
+    // thread; a failure nobody awaits is reported when the script ends.
+    public static Task spawn(Interpreter interpreter, PavaCallable function, List<Object> arguments) {
+        Interpreter fork = interpreter.fork();
+        ExecutionLimits limits = interpreter.limits();
+        Task task = new Task(CompletableFuture.supplyAsync(() -> {
+            try {
+                return function.call(fork, arguments);
+            } catch (ExitSignal exit) {
+                fork.io().flush();
+                limits.exit(exit);
+                throw exit;
+            }
+        }, executor), limits);
+        task.future.whenComplete((result, error) -> {
+            if (error != null) {
+                synchronized (task) {
+                    if (!task.awaited) {
+                        limits.taskFailed(task);
+                    }
+                }
+            }
+        });
+        return task;
+    }
+
+    // Waits for the task and returns its result, rethrowing its error if it
+    // failed. Polls the run's limits while it waits, so a cancelled script stops.
+    public Object await() {
+        synchronized (this) {
+            awaited = true;
+        }
+        limits.taskAwaited(this);
+        while (true) {
+            try {
+                return future.get(ExecutionLimits.POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                limits.poll();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Task failed: " + cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Interrupted while waiting for a task.");
+            }
+        }
+    }
+
+    // The message of the error the task failed with.
+    String failure() {
+        Throwable cause = future.handle((result, error) -> error).join();
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof RuntimeException && cause.getMessage() != null ? cause.getMessage() : String.valueOf(cause);
+    }
+
+    // The pool that runs tasks, also used by other builtins that block on one.
+    static ExecutorService executor() {
+        return executor;
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Java 17: waiting on a task from a worker goes through ForkJoinPool.managedBlock
+            // (CompletableFuture.join does this), so the pool adds threads instead of deadlocking.
+            return new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<task>";
+    }
+}
@@ -0,0 +1,38 @@
+package interpreter.builtins;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class AppendFileFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 2;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Object arg = arguments.get(0);
+        if (!(arg instanceof String)) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "First argument to appendFile() must be a path string.");
+        }
+        Path path = interpreter.io().resolve((String) arg);
+        Object text = arguments.get(1);
+        if (!(text instanceof String)) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Second argument to appendFile() must be a string.");
+        }
+        try {
+            interpreter.io().files().append(path, (String) text);
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Error writing file: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
@@ -0,0 +1,26 @@
+package interpreter.builtins;
+
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class AwaitFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 1;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Object arg = arguments.get(0);
+        if (!(arg instanceof Task)) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Argument to await() must be a task.");
+        }
+        return ((Task) arg).await();
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
@@ -0,0 +1,87 @@
+package interpreter.builtins;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import interpreter.PavaCallable;
+
+/*
+    Native functions, created on first lookup instead of up front.
+    The global environment asks here when a name is not defined, so a script
+    only loads the builtin classes it actually uses. Builtins keep no state,
+    so one table of instances is shared by every interpreter in the process.
+*/
+public final class Builtins {
+    private static final Map<String, PavaCallable> table = new ConcurrentHashMap<>();
+
+    private Builtins() {
+    }
+
+    // Returns the named builtin, or null if there is none.
+    public static PavaCallable lookup(String name) {
+        PavaCallable builtin = table.get(name);
+        if (builtin == null) {
+            builtin = create(name);
+            if (builtin != null) {
+                PavaCallable raced = table.putIfAbsent(name, builtin);
+                if (raced != null) builtin = raced;
+            }
+        }
+        return builtin;
+    }
+
+    // Whether a builtin's result depends only on its arguments, with no I/O,
+    // clock, tasks or other effects. Module snapshots rely on this.
+    public static boolean isPure(PavaCallable builtin) {
+        return builtin instanceof Pava || builtin instanceof TypeFunction
+                || builtin instanceof StringFunction || builtin instanceof NumberFunction
+                || builtin instanceof LengthFunction || builtin instanceof GetAsciiCodeFunction
+                || builtin instanceof FromAsciiCodeFunction;
+    }
+
+    private static PavaCallable create(String name) {
+        switch (name) {
+            case "clock": return new ClockFunction();
+            case "pava": return new Pava();
+            case "typeof": return new TypeFunction();
+            case "input": return new InputFunction();
+            case "err": return new ErrFunction();
+            case "string": return new StringFunction();
+            case "number": return new NumberFunction();
+            case "shell": return new ShellFunction();
+            case "length": return new LengthFunction();
+            case "exit": return new ExitFunction();
+            case "getAsciiCode": return new GetAsciiCodeFunction();
+            case "fromAsciiCode": return new FromAsciiCodeFunction();
+            case "spawn": return new SpawnFunction();
+            case "await": return new AwaitFunction();
+            case "parallelMap": return new ParallelMapFunction();
+            case "parallelFilter": return new ParallelFilterFunction();
+            case "parallelReduce": return new ParallelReduceFunction();
+            case "channel": return new ChannelFunction();
+            case "send": return new SendFunction();
+            case "receive": return new ReceiveFunction();
+            case "tryReceive": return new TryReceiveFunction();
+            case "close": return new CloseFunction();
+            case "select": return new SelectFunction();
+            case "readAll": return new ReadAllFunction();
+            case "readLines": return new ReadLinesFunction();
+            case "scanWord": return new ScanWordFunction();
+            case "scanNumber": return new ScanNumberFunction();
+            case "hasNext": return new HasNextFunction();
+            case "next": return new NextFunction();
+            case "exec": return new ExecFunction();
+            case "stdout": return new StdoutFunction();
+            case "stderr": return new StderrFunction();
+            case "waitFor": return new WaitForFunction();
+            case "waitAll": return new WaitAllFunction();
+            case "kill": return new KillFunction();
+            case "readFile": return new ReadFileFunction();
+            case "writeFile": return new WriteFileFunction();
+            case "appendFile": return new AppendFileFunction();
+            case "lines": return new LinesFunction();
+            case "readBytes": return new ReadBytesFunction();
+            default: return null;
+        }
+    }
+}
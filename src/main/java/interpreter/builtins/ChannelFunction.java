@@ -0,0 +1,30 @@
+package interpreter.builtins;
+
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class ChannelFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return -1;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        // channel() is unbuffered; channel(n) buffers up to n values.
+        if (arguments.isEmpty()) {
+            return new Channel(0);
+        }
+        Object arg = arguments.get(0);
+        if (!(arg instanceof Double) || (Double) arg < 0) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Argument to channel() must be a non-negative number.");
+        }
+        return new Channel((int) Math.floor((Double) arg));
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
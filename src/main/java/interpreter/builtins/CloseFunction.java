@@ -0,0 +1,27 @@
+package interpreter.builtins;
+
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class CloseFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 1;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Object arg = arguments.get(0);
+        if (!(arg instanceof Channel)) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Argument to close() must be a channel.");
+        }
+        ((Channel) arg).close();
+        return null;
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
@@ -11,7 +11,7 @@ public class ErrFunction implements PavaCallable {
     
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        System.err.println(arguments.get(0));
+        interpreter.io().err().println(arguments.get(0));
         return null;
     }
     
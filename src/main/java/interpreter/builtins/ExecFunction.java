@@ -0,0 +1,51 @@
+package interpreter.builtins;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class ExecFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 1;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        // exec("cmd args") splits on whitespace; exec(["cmd", "arg with spaces"]) does not.
+        Object arg = arguments.get(0);
+        List<String> command;
+        if (arg instanceof String) {
+            command = PavaProcess.split((String) arg);
+        } else if (arg instanceof List) {
+            command = new ArrayList<>();
+            for (Object word : (List<?>) arg) {
+                if (!(word instanceof String)) {
+                    throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Command array passed to exec() must contain only strings.");
+                }
+                command.add((String) word);
+            }
+        } else {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Argument to exec() must be a string or an array of strings.");
+        }
+        if (command.isEmpty()) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Command passed to exec() is empty.");
+        }
+        try {
+            // Output printed so far comes before anything the command does.
+            interpreter.io().flush();
+            Path cwd = interpreter.io().workingDirectory();
+            return PavaProcess.start(command, cwd, true);
+        } catch (IOException e) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Error starting process: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
@@ -15,7 +15,7 @@ public class ExitFunction implements PavaCallable {
         Object arg = arguments.get(0);
         if (arg instanceof Double) {
             int code = (int) Math.round((Double) arg);
-            System.exit(code);
+            throw new ExitSignal(code);
         }
         throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Argument to exit() must be a number.");
     }
@@ -0,0 +1,26 @@
+package interpreter.builtins;
+
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class HasNextFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 1;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Object arg = arguments.get(0);
+        if (!(arg instanceof PavaIterator)) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Argument to hasNext() must be an iterator.");
+        }
+        return ((PavaIterator) arg).hasNext();
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
@@ -1,13 +1,10 @@
 package interpreter.builtins;
 
 import java.util.List;
-import java.util.Scanner;
+import java.util.NoSuchElementException;
 import interpreter.*;
 
 public class InputFunction implements PavaCallable {
-    // Use a static Scanner so that input is only opened once.
-    private static final Scanner scanner = new Scanner(System.in);
-    
     // For input, we allow 0 or 1 argument, so we return -1 to signal variable arity.
     @Override
     public int arity() {
@@ -20,9 +17,12 @@ public class InputFunction implements PavaCallable {
         if (arguments.size() == 1) {
             prompt = arguments.get(0).toString();
         }
-        System.out.print(prompt);
-        // Read one line from standard input.
-        String line = scanner.nextLine();
+        interpreter.io().out().write(prompt);
+        // Read one line from the script's standard input.
+        String line = interpreter.io().readLine();
+        if (line == null) {
+            throw new NoSuchElementException("No line found");
+        }
         return line;
     }
     
@@ -0,0 +1,35 @@
+package interpreter.builtins;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class LinesFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 1;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Object arg = arguments.get(0);
+        if (!(arg instanceof String)) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Argument to lines() must be a path string.");
+        }
+        Path path = interpreter.io().resolve((String) arg);
+        // Batched writes to the file land before it is read.
+        interpreter.io().files().flush(path);
+        try {
+            return MappedFile.lines(path);
+        } catch (IOException e) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Error reading file: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
@@ -0,0 +1,134 @@
+package interpreter.builtins;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import interpreter.*;
+import lexer.Token;
+
+/*
+    Fork/join engine behind parallelMap, parallelFilter and parallelReduce.
+    Ranges are split in halves until they are small relative to the pool,
+    or until the pool already has surplus queued work, then each leaf runs
+    the Pava function on its own fork() of the calling interpreter.
+*/
+final class ParallelArrays {
+    private ParallelArrays() {
+    }
+
+    static List<Object> array(Object arg, String builtin) {
+        if (!(arg instanceof List)) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "First argument to " + builtin + "() must be an array.");
+        }
+        @SuppressWarnings("unchecked")
+        List<Object> items = (List<Object>) arg;
+        return items;
+    }
+
+    static PavaCallable function(Object arg, String builtin) {
+        if (!(arg instanceof PavaCallable)) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Second argument to " + builtin + "() must be a function.");
+        }
+        return (PavaCallable) arg;
+    }
+
+    // fn applied to every element, in element order.
+    static Object[] map(Interpreter interpreter, PavaCallable fn, List<Object> items) {
+        Object[] results = new Object[items.size()];
+        if (!items.isEmpty()) {
+            ForkJoinPool.commonPool().invoke(new MapTask(interpreter, fn, items, results, 0, items.size(), threshold(items.size())));
+        }
+        return results;
+    }
+
+    // Folds the (non-empty) list with an associative fn.
+    static Object reduce(Interpreter interpreter, PavaCallable fn, List<Object> items) {
+        return ForkJoinPool.commonPool().invoke(new ReduceTask(interpreter, fn, items, 0, items.size(), threshold(items.size())));
+    }
+
+    // Aim for several leaves per worker so uneven elements still balance.
+    private static int threshold(int size) {
+        return Math.max(1, size / (ForkJoinPool.getCommonPoolParallelism() * 8));
+    }
+
+    private static boolean shouldSplit(int size, int threshold) {
+        return size > threshold && RecursiveAction.getSurplusQueuedTaskCount() <= 3;
+    }
+
+    private static final class MapTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Interpreter interpreter;
+        private final PavaCallable fn;
+        private final List<Object> items;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        MapTask(Interpreter interpreter, PavaCallable fn, List<Object> items, Object[] results, int from, int to, int threshold) {
+            this.interpreter = interpreter;
+            this.fn = fn;
+            this.items = items;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (shouldSplit(to - from, threshold)) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new MapTask(interpreter, fn, items, results, from, middle, threshold),
+                        new MapTask(interpreter, fn, items, results, middle, to, threshold));
+                return;
+            }
+            Interpreter worker = interpreter.fork();
+            for (int i = from; i < to; i++) {
+                results[i] = fn.call(worker, Collections.singletonList(items.get(i)));
+            }
+        }
+    }
+
+    private static final class ReduceTask extends RecursiveTask<Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final Interpreter interpreter;
+        private final PavaCallable fn;
+        private final List<Object> items;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        ReduceTask(Interpreter interpreter, PavaCallable fn, List<Object> items, int from, int to, int threshold) {
+            this.interpreter = interpreter;
+            this.fn = fn;
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Object compute() {
+            if (shouldSplit(to - from, threshold)) {
+                int middle = (from + to) >>> 1;
+                ReduceTask right = new ReduceTask(interpreter, fn, items, middle, to, threshold);
+                right.fork();
+                Object left = new ReduceTask(interpreter, fn, items, from, middle, threshold).compute();
+                Object rightResult = right.join();
+                return fn.call(interpreter.fork(), Arrays.asList(left, rightResult));
+            }
+            Interpreter worker = interpreter.fork();
+            Object accumulator = items.get(from);
+            for (int i = from + 1; i < to; i++) {
+                accumulator = fn.call(worker, Arrays.asList(accumulator, items.get(i)));
+            }
+            return accumulator;
+        }
+    }
+}
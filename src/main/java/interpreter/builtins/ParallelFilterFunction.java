@@ -0,0 +1,32 @@
+package interpreter.builtins;
+
+import java.util.ArrayList;
+import java.util.List;
+import interpreter.*;
+
+public class ParallelFilterFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 2;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        List<Object> items = ParallelArrays.array(arguments.get(0), "parallelFilter");
+        PavaCallable fn = ParallelArrays.function(arguments.get(1), "parallelFilter");
+        // The predicate runs in parallel; the kept elements stay in order.
+        Object[] keep = ParallelArrays.map(interpreter, fn, items);
+        List<Object> result = new ArrayList<>();
+        for (int i = 0; i < keep.length; i++) {
+            if (Interpreter.isTruthy(keep[i])) {
+                result.add(items.get(i));
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
@@ -0,0 +1,26 @@
+package interpreter.builtins;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import interpreter.*;
+
+public class ParallelMapFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 2;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        List<Object> items = ParallelArrays.array(arguments.get(0), "parallelMap");
+        PavaCallable fn = ParallelArrays.function(arguments.get(1), "parallelMap");
+        // Returns a new array of fn(element), in the original order.
+        return new ArrayList<>(Arrays.asList(ParallelArrays.map(interpreter, fn, items)));
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
@@ -0,0 +1,32 @@
+package interpreter.builtins;
+
+import java.util.Arrays;
+import java.util.List;
+import interpreter.*;
+
+public class ParallelReduceFunction implements PavaCallable {
+    // parallelReduce(array, fn) or parallelReduce(array, fn, initial).
+    @Override
+    public int arity() {
+        return -1;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        List<Object> items = ParallelArrays.array(arguments.isEmpty() ? null : arguments.get(0), "parallelReduce");
+        PavaCallable fn = ParallelArrays.function(arguments.size() < 2 ? null : arguments.get(1), "parallelReduce");
+        boolean hasInitial = arguments.size() > 2;
+        Object initial = hasInitial ? arguments.get(2) : null;
+        if (items.isEmpty()) {
+            return initial;
+        }
+        // fn must be associative: the elements are combined in a tree, not left to right.
+        Object reduced = ParallelArrays.reduce(interpreter, fn, items);
+        return hasInitial ? fn.call(interpreter, Arrays.asList(initial, reduced)) : reduced;
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
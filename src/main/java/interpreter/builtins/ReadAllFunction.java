@@ -0,0 +1,22 @@
+package interpreter.builtins;
+
+import java.util.List;
+import interpreter.*;
+
+public class ReadAllFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 0;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        // The rest of standard input as one string.
+        return interpreter.io().stdin().readAll();
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
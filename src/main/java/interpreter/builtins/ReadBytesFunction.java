@@ -0,0 +1,41 @@
+package interpreter.builtins;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class ReadBytesFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 3;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Object arg = arguments.get(0);
+        if (!(arg instanceof String)) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "First argument to readBytes() must be a path string.");
+        }
+        Path path = interpreter.io().resolve((String) arg);
+        Object offset = arguments.get(1);
+        Object length = arguments.get(2);
+        if (!(offset instanceof Double) || (Double) offset < 0 || !(length instanceof Double) || (Double) length < 0) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Offset and length passed to readBytes() must be non-negative numbers.");
+        }
+        // Batched writes to the file land before it is read.
+        interpreter.io().files().flush(path);
+        try {
+            return MappedFile.readBytes(path, (long) Math.floor((Double) offset),
+                    (int) Math.min(Math.floor((Double) length), Integer.MAX_VALUE - 8));
+        } catch (IOException e) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Error reading file: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
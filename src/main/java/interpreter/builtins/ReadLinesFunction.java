@@ -0,0 +1,23 @@
+package interpreter.builtins;
+
+import java.util.List;
+import interpreter.*;
+
+public class ReadLinesFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 0;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        // Lines are read only as the iterator is stepped, so input of any size streams through.
+        StdinReader stdin = interpreter.io().stdin();
+        return new LineIterator(stdin::readLine);
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
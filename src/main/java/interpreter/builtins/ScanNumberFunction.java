@@ -0,0 +1,27 @@
+package interpreter.builtins;
+
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class ScanNumberFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 0;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        // The next whitespace-separated number of standard input, or nil at its end.
+        try {
+            return interpreter.io().stdin().readNumber();
+        } catch (NumberFormatException e) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "scanNumber() expected a number but found '" + e.getMessage() + "'.");
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
@@ -0,0 +1,22 @@
+package interpreter.builtins;
+
+import java.util.List;
+import interpreter.*;
+
+public class ScanWordFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 0;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        // The next whitespace-separated word of standard input, or nil at its end.
+        return interpreter.io().stdin().readWord();
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
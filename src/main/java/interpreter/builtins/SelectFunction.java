@@ -0,0 +1,37 @@
+package interpreter.builtins;
+
+import java.util.ArrayList;
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class SelectFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 1;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Object arg = arguments.get(0);
+        List<Channel> channels = new ArrayList<>();
+        if (arg instanceof List) {
+            for (Object element : (List<?>) arg) {
+                if (!(element instanceof Channel)) {
+                    channels = null;
+                    break;
+                }
+                channels.add((Channel) element);
+            }
+        }
+        if (!(arg instanceof List) || channels == null || channels.isEmpty()) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Argument to select() must be an array of channels.");
+        }
+        return new ArrayList<>(Channel.select(channels, interpreter.limits()));
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
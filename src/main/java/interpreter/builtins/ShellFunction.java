@@ -1,9 +1,8 @@
 package interpreter.builtins;
 
 import java.util.List;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.io.IOException;
+import java.nio.file.Path;
 import interpreter.*;
 import lexer.Token;
 
@@ -19,21 +18,26 @@ public class ShellFunction implements PavaCallable {
         if (!(arg instanceof String)) {
             throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Argument to shell() must be a string.");
         }
-        String command = (String) arg;
+        List<String> command = PavaProcess.split((String) arg);
+        if (command.isEmpty()) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Error executing shell command: Empty command");
+        }
         try {
-            Process process = Runtime.getRuntime().exec(command);
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()));
+            // Output printed so far comes before anything the command does.
+            interpreter.io().flush();
+            Path cwd = interpreter.io().workingDirectory();
+            // stderr is discarded rather than left in an unread pipe, which
+            // could fill up and stall the command.
+            PavaProcess process = PavaProcess.start(command, cwd, false);
+            PavaIterator lines = process.stdoutLines(interpreter.limits());
             StringBuilder output = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
+            while (lines.hasNext()) {
                 if (output.length() > 0) output.append("\n");
-                output.append(line);
+                output.append(lines.next());
             }
-            reader.close();
-            process.waitFor();
+            process.waitFor(-1, interpreter.limits());
             return output.toString();
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Error executing shell command: " + e.getMessage());
         }
     }
@@ -0,0 +1,28 @@
+package interpreter.builtins;
+
+import java.util.ArrayList;
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class SpawnFunction implements PavaCallable {
+    // spawn(fn, args...) takes any number of arguments for fn.
+    @Override
+    public int arity() {
+        return -1;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        if (arguments.isEmpty() || !(arguments.get(0) instanceof PavaCallable)) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "First argument to spawn() must be a function.");
+        }
+        PavaCallable function = (PavaCallable) arguments.get(0);
+        return Task.spawn(interpreter, function, new ArrayList<>(arguments.subList(1, arguments.size())));
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
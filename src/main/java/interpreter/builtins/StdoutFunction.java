@@ -0,0 +1,26 @@
+package interpreter.builtins;
+
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class StdoutFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 1;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Object arg = arguments.get(0);
+        if (!(arg instanceof PavaProcess)) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Argument to stdout() must be a process.");
+        }
+        return ((PavaProcess) arg).stdoutLines(interpreter.limits());
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
@@ -0,0 +1,27 @@
+package interpreter.builtins;
+
+import java.util.ArrayList;
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class TryReceiveFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return 1;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Object arg = arguments.get(0);
+        if (!(arg instanceof Channel)) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Argument to tryReceive() must be a channel.");
+        }
+        return new ArrayList<>(((Channel) arg).tryReceive());
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
@@ -17,6 +17,10 @@ public class TypeFunction implements PavaCallable {
         if (arg instanceof String) return "STRING";
         if (arg instanceof Boolean) return "BOOLEAN";
         if (arg instanceof PavaCallable) return "FUNCTION";
+        if (arg instanceof Task) return "TASK";
+        if (arg instanceof Channel) return "CHANNEL";
+        if (arg instanceof PavaIterator) return "ITERATOR";
+        if (arg instanceof PavaProcess) return "PROCESS";
         return "OBJECT";
     }
     
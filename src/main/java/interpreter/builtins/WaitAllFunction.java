@@ -0,0 +1,43 @@
+package interpreter.builtins;
+
+import java.util.ArrayList;
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class WaitAllFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return -1;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        // waitAll(procs) returns their exit codes in order. With a timeout the
+        // whole wait shares one deadline, and processes still running give nil.
+        if (arguments.isEmpty() || arguments.size() > 2 || !(arguments.get(0) instanceof List)) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "waitAll() takes an array of processes and an optional timeout in milliseconds.");
+        }
+        List<?> processes = (List<?>) arguments.get(0);
+        for (Object process : processes) {
+            if (!(process instanceof PavaProcess)) {
+                throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Array passed to waitAll() must contain only processes.");
+            }
+        }
+        long deadline = arguments.size() == 2
+                ? System.nanoTime() + WaitForFunction.timeoutArgument(arguments.get(1), "waitAll") * 1_000_000
+                : 0;
+        List<Object> statuses = new ArrayList<>(processes.size());
+        for (Object process : processes) {
+            long timeout = arguments.size() == 2 ? Math.max(0, (deadline - System.nanoTime()) / 1_000_000) : -1;
+            Integer status = ((PavaProcess) process).waitFor(timeout, interpreter.limits());
+            statuses.add(status == null ? null : (double) status);
+        }
+        return statuses;
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
@@ -0,0 +1,35 @@
+package interpreter.builtins;
+
+import java.util.List;
+import interpreter.*;
+import lexer.Token;
+
+public class WaitForFunction implements PavaCallable {
+    @Override
+    public int arity() {
+        return -1;
+    }
+    
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        // waitFor(proc) waits for the exit code; waitFor(proc, ms) gives nil if it is still running.
+        if (arguments.isEmpty() || arguments.size() > 2 || !(arguments.get(0) instanceof PavaProcess)) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "waitFor() takes a process and an optional timeout in milliseconds.");
+        }
+        long timeout = arguments.size() == 2 ? timeoutArgument(arguments.get(1), "waitFor") : -1;
+        Integer status = ((PavaProcess) arguments.get(0)).waitFor(timeout, interpreter.limits());
+        return status == null ? null : (double) status;
+    }
+
+    static long timeoutArgument(Object arg, String name) {
+        if (!(arg instanceof Double) || (Double) arg < 0) {
+            throw new RuntimeError(new Token(null, "NIL", "NIL", 0), "Timeout passed to " + name + "() must be a non-negative number.");
+        }
+        return (long) Math.floor((Double) arg);
+    }
+    
+    @Override
+    public String toString() {
+        return "<builtin PAVA fn>";
+    }
+}
@@ -1,44 +1,180 @@
 package lexer;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-public class Lexer {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+public class Lexer implements TokenSource {
+    // Character classes for the ASCII fast path; anything >= 128 falls back to
+    // Character.isLetter/isDigit.
+    private static final byte ALPHA = 1;
+    private static final byte DIGIT = 2;
+    private static final byte[] ASCII_CLASS = new byte[128];
+
+    // Lexemes of every token whose text is fixed, indexed by TokenType ordinal.
+    private static final String[] FIXED_LEXEMES = new String[TokenType.values().length];
+
+    // Perfect hash over (first char, last char, length) for the keyword set.
+    private static final String[] KEYWORD_TEXT = new String[32];
+    private static final TokenType[] KEYWORD_TYPE = new TokenType[32];
+
+    // Boxed small integers shared by every NUMBER token.
+    private static final Double[] SMALL_NUMBERS = new Double[256];
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++)
+            ASCII_CLASS[c] = ALPHA;
+        for (char c = 'A'; c <= 'Z'; c++)
+            ASCII_CLASS[c] = ALPHA;
+        ASCII_CLASS['_'] = ALPHA;
+        for (char c = '0'; c <= '9'; c++)
+            ASCII_CLASS[c] = DIGIT;
+
+        String[][] fixed = {
+                { "LEFT_BRACKET", "[" }, { "RIGHT_BRACKET", "]" }, { "LEFT_PAREN", "(" },
+                { "RIGHT_PAREN", ")" }, { "LEFT_BRACE", "{" }, { "RIGHT_BRACE", "}" },
+                { "STAR", "*" }, { "DOT", "." }, { "COMMA", "," }, { "PLUS", "+" },
+                { "MINUS", "-" }, { "SEMICOLON", ";" }, { "EQUAL", "=" }, { "EQUAL_EQUAL", "==" },
+                { "BANG", "!" }, { "BANG_EQUAL", "!=" }, { "LESS", "<" }, { "LESS_EQUAL", "<=" },
+                { "GREATER", ">" }, { "GREATER_EQUAL", ">=" }, { "SLASH", "/" },
+                { "AND", "and" }, { "CLASS", "class" }, { "ELSE", "else" }, { "FALSE", "false" },
+                { "FOR", "for" }, { "FUN", "fun" }, { "IF", "if" }, { "NIL", "nil" }, { "OR", "or" },
+                { "PRINT", "print" }, { "RETURN", "return" }, { "SUPER", "super" }, { "THIS", "this" },
+                { "TRUE", "true" }, { "VAR", "let" }, { "WHILE", "while" }, { "EXPORT", "kaddo" },
+                { "IMPORT", "pao" } };
+        for (String[] entry : fixed) {
+            TokenType type = TokenType.valueOf(entry[0]);
+            FIXED_LEXEMES[type.ordinal()] = entry[1];
+            if (type.ordinal() >= TokenType.AND.ordinal() && type.ordinal() <= TokenType.EXPORT.ordinal()) {
+                String text = entry[1];
+                int slot = keywordHash(text.charAt(0), text.charAt(text.length() - 1), text.length());
+                if (KEYWORD_TEXT[slot] != null) {
+                    throw new IllegalStateException("Keyword hash collision: " + text);
+                }
+                KEYWORD_TEXT[slot] = text;
+                KEYWORD_TYPE[slot] = type;
+            }
+        }
+
+        for (int i = 0; i < SMALL_NUMBERS.length; i++) {
+            SMALL_NUMBERS[i] = (double) i;
+        }
+    }
+
+    private static final int STREAM_WINDOW = 64 * 1024;
+
+    private char[] source;
+    private int length;
+    private final Reader reader;
+    private final SymbolTable symbols = new SymbolTable();
+    private List<Token> tokens;
+    private TokenBuffer buffer;
+    private boolean started = false;
+    private Token eof;
     private int start = 0;
     private int current = 0;
     private int line = 1;
     public int errorCode = 0;
+    public PrintStream errors = System.err;
 
     public Lexer(String source) {
+        this(source.toCharArray());
+    }
+
+    public Lexer(char[] source) {
         this.source = source;
+        this.length = source.length;
+        this.reader = null;
+    }
+
+    // Streaming mode: characters are pulled from the reader into a sliding
+    // window as needed, and tokens are produced one at a time by next().
+    public Lexer(Reader reader) {
+        this.source = new char[STREAM_WINDOW];
+        this.length = 0;
+        this.reader = reader;
+        this.tokens = new ArrayList<>(1);
     }
 
     public List<Token> scanTokens() {
-        // Ignore a shebang line at the very beginning.
-        if (source.startsWith("#!")) {
-            while (!isAtEnd() && peek() != '\n') {
-                advance();
+        // Roughly one token per five characters of typical Pava source.
+        tokens = new ArrayList<>(Math.max(16, length / 5));
+        scan();
+        tokens.add(new Token(TokenType.EOF, "", null, line));
+        return tokens;
+    }
+
+    // Scans into packed int arrays instead of Token objects. Feed the result to
+    // new Parser(buffer) for large generated sources.
+    public TokenBuffer scanTokenBuffer() {
+        buffer = new TokenBuffer(source, symbols, length / 5);
+        scan();
+        buffer.add(TokenType.EOF, current, 0, line);
+        return buffer;
+    }
+
+    // Returns the next token of a streaming lexer. Only the current token's
+    // characters are kept, so memory stays bounded by the longest token.
+    @Override
+    public Token next() {
+        if (!started) {
+            started = true;
+            skipShebang();
+        }
+        while (tokens.isEmpty()) {
+            if (isAtEnd()) {
+                if (eof == null) {
+                    eof = new Token(TokenType.EOF, "", null, line);
+                }
+                return eof;
             }
-            // Optionally, skip the newline character.
-            if (!isAtEnd()) {
-                advance();
-                line++;
+            try {
+                start = current;
+                scanToken();
+            } catch (LexicalError e) {
+                errors.println(e.getMessage());
+                this.errorCode = 65;
             }
         }
+        Token token = tokens.get(0);
+        tokens.clear();
+        return token;
+    }
+
+    private void scan() {
+        skipShebang();
 
         while (!isAtEnd()) {
             try {
                 start = current;
                 scanToken();
             } catch (LexicalError e) {
-                System.err.println(e.getMessage());
+                errors.println(e.getMessage());
                 this.errorCode = 65;
             }
         }
-        tokens.add(new Token(TokenType.EOF, "", null, line));
-        return tokens;
+    }
+
+    private void skipShebang() {
+        // Ignore a shebang line at the very beginning.
+        if (!isAtEnd() && source[0] == '#' && peekNext() == '!') {
+            while (!isAtEnd() && peek() != '\n') {
+                advance();
+            }
+            // Optionally, skip the newline character.
+            if (!isAtEnd()) {
+                advance();
+                line++;
+            }
+        }
     }
 
     private void scanToken() {
@@ -62,8 +198,8 @@ public class Lexer {
             case '>' -> addToken(match('=') ? TokenType.GREATER_EQUAL : TokenType.GREATER);
             case '/' -> {
                 if (match('/')) {
-                    while (peek() != '\n' && !isAtEnd())
-                        advance();
+                    while (!isAtEnd() && source[current] != '\n')
+                        current++;
                 } else {
                     addToken(TokenType.SLASH);
                 }
@@ -85,43 +221,48 @@ public class Lexer {
     }
 
     private boolean match(char expected) {
-        if (isAtEnd() || source.charAt(current) != expected)
+        if (isAtEnd() || source[current] != expected)
             return false;
         current++;
         return true;
     }
 
     private char advance() {
-        return source.charAt(current++);
+        return source[current++];
     }
 
+    // Tokens with fixed text share one lexeme String each.
     private void addToken(TokenType type) {
-        addToken(type, null);
-    }
-
-    private void addToken(TokenType type, Object literal) {
-        String lexeme = source.substring(start, current);
-        tokens.add(new Token(type, lexeme, literal, line));
+        if (buffer != null) {
+            buffer.add(type, start, current - start, line);
+        } else {
+            tokens.add(new Token(type, FIXED_LEXEMES[type.ordinal()], null, line));
+        }
     }
 
     private char peek() {
         if (isAtEnd())
             return '\0';
-        return source.charAt(current);
+        return source[current];
     }
 
     private void stringLiteral() {
-        while (peek() != '"' && !isAtEnd()) {
-            if (peek() == '\n')
+        while (!isAtEnd() && source[current] != '"') {
+            if (source[current] == '\n')
                 line++;
-            advance();
+            current++;
         }
         if (isAtEnd()) {
             throw new LexicalError("[line " + line + "] Error: Unterminated string.");
         }
         advance();
-        String value = source.substring(start + 1, current - 1);
-        addToken(TokenType.STRING, value);
+        if (buffer != null) {
+            buffer.add(TokenType.STRING, start, current - start, line);
+        } else {
+            String lexeme = new String(source, start, current - start);
+            String value = lexeme.substring(1, lexeme.length() - 1);
+            tokens.add(new Token(TokenType.STRING, lexeme, value, line));
+        }
     }
 
     private void numberLiteral() {
@@ -132,56 +273,138 @@ public class Lexer {
             while (isDigit(peek()))
                 advance();
         }
-        addToken(TokenType.NUMBER, Double.parseDouble(source.substring(start, current)));
+        if (buffer != null) {
+            buffer.add(TokenType.NUMBER, start, current - start, line);
+        } else {
+            tokens.add(new Token(TokenType.NUMBER, new String(source, start, current - start),
+                    parseNumber(source, start, current), line));
+        }
+    }
+
+    // Parses digits[.digits] without building a String when the value is exact:
+    // up to 15 significant digits and a power of ten that is itself exact, where
+    // a single division is correctly rounded and matches Double.parseDouble.
+    static Double parseNumber(char[] chars, int from, int to) {
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (int i = from; i < to; i++) {
+            char c = chars[i];
+            if (c == '.') {
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || digits >= 15) {
+                return Double.parseDouble(new String(chars, from, to - from));
+            }
+            mantissa = mantissa * 10 + (c - '0');
+            if (mantissa != 0 || fractionDigits >= 0) {
+                digits++;
+            }
+            if (fractionDigits >= 0) {
+                fractionDigits++;
+            }
+        }
+        if (fractionDigits <= 0) {
+            if (mantissa < SMALL_NUMBERS.length) {
+                return SMALL_NUMBERS[(int) mantissa];
+            }
+            return (double) mantissa;
+        }
+        return mantissa / POWERS_OF_TEN[fractionDigits];
+    }
+
+    static String fixedLexeme(TokenType type) {
+        return FIXED_LEXEMES[type.ordinal()];
     }
 
     private char peekNext() {
-        if (current + 1 >= source.length())
-            return '\0';
-        return source.charAt(current + 1);
+        while (current + 1 >= length) {
+            if (!fill())
+                return '\0';
+        }
+        return source[current + 1];
     }
 
     private void identifier() {
-        while (isAlphaNumeric(peek()))
-            advance();
-        String text = source.substring(start, current);
-        TokenType type = switch (text) {
-            case "and" -> TokenType.AND;
-            case "class" -> TokenType.CLASS;
-            case "else" -> TokenType.ELSE;
-            case "false" -> TokenType.FALSE;
-            case "for" -> TokenType.FOR;
-            case "fun" -> TokenType.FUN;
-            case "if" -> TokenType.IF;
-            case "nil" -> TokenType.NIL;
-            case "or" -> TokenType.OR;
-            case "print" -> TokenType.PRINT;
-            case "return" -> TokenType.RETURN;
-            case "super" -> TokenType.SUPER;
-            case "this" -> TokenType.THIS;
-            case "true" -> TokenType.TRUE;
-            case "let" -> TokenType.VAR;
-            case "while" -> TokenType.WHILE;
-            case "kaddo" -> TokenType.EXPORT;
-            case "pao" -> TokenType.IMPORT;
-            default -> TokenType.IDENTIFIER;
-        };
-        addToken(type);
+        while (!isAtEnd() && isAlphaNumeric(source[current]))
+            current++;
+        TokenType type = keyword(start, current - start);
+        if (type == TokenType.IDENTIFIER) {
+            if (buffer != null) {
+                buffer.add(type, start, current - start, line);
+            } else {
+                tokens.add(new Token(type, symbols.intern(source, start, current - start), null, line));
+            }
+        } else {
+            addToken(type);
+        }
+    }
+
+    private TokenType keyword(int offset, int length) {
+        if (length < 2 || length > 6)
+            return TokenType.IDENTIFIER;
+        int slot = keywordHash(source[offset], source[offset + length - 1], length);
+        String text = KEYWORD_TEXT[slot];
+        if (text == null || text.length() != length)
+            return TokenType.IDENTIFIER;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) != source[offset + i])
+                return TokenType.IDENTIFIER;
+        }
+        return KEYWORD_TYPE[slot];
+    }
+
+    private static int keywordHash(char first, char last, int length) {
+        return (first * 12 + last + length * 4) & 31;
     }
 
     private boolean isAlpha(char c) {
-        return Character.isLetter(c) || c == '_';
+        if (c < 128)
+            return ASCII_CLASS[c] == ALPHA;
+        return Character.isLetter(c);
     }
 
     private boolean isAlphaNumeric(char c) {
-        return isAlpha(c) || isDigit(c);
+        if (c < 128)
+            return ASCII_CLASS[c] != 0;
+        return Character.isLetter(c) || Character.isDigit(c);
     }
 
     private boolean isDigit(char c) {
+        if (c < 128)
+            return ASCII_CLASS[c] == DIGIT;
         return Character.isDigit(c);
     }
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= length && !fill();
+    }
+
+    // Streaming mode only: drops the characters before the current token and
+    // reads more input. Returns false once the reader is exhausted.
+    private boolean fill() {
+        if (reader == null) {
+            return false;
+        }
+        if (start > 0) {
+            System.arraycopy(source, start, source, 0, length - start);
+            length -= start;
+            current -= start;
+            start = 0;
+        }
+        if (length == source.length) {
+            source = Arrays.copyOf(source, source.length * 2);
+        }
+        try {
+            int read = reader.read(source, length, source.length - length);
+            if (read <= 0) {
+                return false;
+            }
+            length += read;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
@@ -0,0 +1,69 @@
+package lexer;
+
+/*
+    Interns identifier lexemes straight from the source characters.
+    Repeated identifiers reuse one canonical String instead of a fresh
+    substring per token, and only the first occurrence allocates.
+*/
+final class SymbolTable {
+    private String[] table = new String[256];
+    private int size = 0;
+
+    String intern(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        while (true) {
+            String existing = table[slot];
+            if (existing == null) {
+                break;
+            }
+            if (existing.hashCode() == hash && matches(existing, chars, offset, length)) {
+                return existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // Canonical across lexers too, so names from different modules compare equal by reference.
+        String symbol = new String(chars, offset, length).intern();
+        table[slot] = symbol;
+        if (++size * 2 > table.length) {
+            grow();
+        }
+        return symbol;
+    }
+
+    private static boolean matches(String s, char[] chars, int offset, int length) {
+        if (s.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        int mask = table.length - 1;
+        for (String s : old) {
+            if (s == null) {
+                continue;
+            }
+            int slot = mix(s.hashCode()) & mask;
+            while (table[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = s;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
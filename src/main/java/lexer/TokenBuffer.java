@@ -0,0 +1,104 @@
+package lexer;
+
+import java.util.Arrays;
+
+/*
+    Struct-of-arrays token storage produced by Lexer.scanTokenBuffer().
+    Each token is four ints (type, offset, length, line) pointing back into the
+    source characters; Token objects are only built when the parser asks for
+    them through cursor(), so the full token list never exists on the heap.
+*/
+public final class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final char[] source;
+    private final SymbolTable symbols;
+    private int[] types;
+    private int[] offsets;
+    private int[] lengths;
+    private int[] lines;
+    private int size = 0;
+
+    TokenBuffer(char[] source, SymbolTable symbols, int capacity) {
+        this.source = source;
+        this.symbols = symbols;
+        int initial = Math.max(16, capacity);
+        this.types = new int[initial];
+        this.offsets = new int[initial];
+        this.lengths = new int[initial];
+        this.lines = new int[initial];
+    }
+
+    void add(TokenType type, int offset, int length, int line) {
+        if (size == types.length) {
+            int capacity = size + (size >> 1);
+            types = Arrays.copyOf(types, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+        types[size] = type.ordinal();
+        offsets[size] = offset;
+        lengths[size] = length;
+        lines[size] = line;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int offset(int index) {
+        return offsets[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    // Builds the Token object for one entry.
+    public Token token(int index) {
+        TokenType type = type(index);
+        int offset = offsets[index];
+        int length = lengths[index];
+        int line = lines[index];
+        switch (type) {
+            case IDENTIFIER:
+                return new Token(type, symbols.intern(source, offset, length), null, line);
+            case NUMBER:
+                return new Token(type, new String(source, offset, length),
+                        Lexer.parseNumber(source, offset, offset + length), line);
+            case STRING:
+                return new Token(type, new String(source, offset, length),
+                        new String(source, offset + 1, length - 2), line);
+            case EOF:
+                return new Token(type, "", null, line);
+            default:
+                return new Token(type, Lexer.fixedLexeme(type), null, line);
+        }
+    }
+
+    // Sequential view for the parser; it keeps only the buffer, not a token list.
+    public TokenSource cursor() {
+        return new TokenSource() {
+            private int next = 0;
+
+            @Override
+            public Token next() {
+                Token token = token(next);
+                if (next < size - 1) {
+                    next++;
+                }
+                return token;
+            }
+        };
+    }
+}
@@ -0,0 +1,7 @@
+package lexer;
+
+// A forward-only supply of tokens for the parser.
+// After the EOF token has been returned, next() keeps returning EOF.
+public interface TokenSource {
+    Token next();
+}
@@ -0,0 +1,257 @@
+package parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lexer.Lexer;
+
+/*
+    Persistent cache of parsed scripts (.pavac files).
+    Entries are named by a SHA-256 of the source bytes salted with the
+    interpreter version and build, so editing a script or upgrading pava
+    simply misses the old entry. Anything unreadable is treated as a miss and
+    rewritten; a cache that cannot be written is silently skipped.
+
+    Location: $PAVA_CACHE_DIR, else $XDG_CACHE_HOME/pava, else ~/.cache/pava.
+    Set PAVA_NO_CACHE=1 to always parse from source.
+*/
+public final class AstCache {
+    public static final String VERSION = "1.0.0";
+    private static final int MAGIC = 0x50415643; // "PAVC"
+    private static final int FORMAT = 5;
+    private static final String SALT = buildSalt();
+    private static final int MEMORY_ENTRIES = 256;
+    private static volatile Map<String, List<Stmt>> memory;
+
+    // A parsed script and the lexer's error code (0 when the source was clean).
+    public static final class Result {
+        public final List<Stmt> statements;
+        public final int errorCode;
+
+        Result(List<Stmt> statements, int errorCode) {
+            this.statements = statements;
+            this.errorCode = errorCode;
+        }
+    }
+
+    private AstCache() {
+    }
+
+    // Reads and parses a script, going through the cache when possible.
+    public static Result load(Path file) throws IOException {
+        return load(file, System.err);
+    }
+
+    // As load(file), reporting lexical errors to the given stream.
+    public static Result load(Path file, PrintStream errors) throws IOException {
+        return load(Files.readAllBytes(file), errors);
+    }
+
+    // As load(file, errors), for source bytes the caller has already read.
+    public static Result load(byte[] bytes, PrintStream errors) throws IOException {
+        return load(bytes, errors, false);
+    }
+
+    // With lazyBodies, function bodies are parsed or decoded when first
+    // called, which is what imported modules use. A body with a syntax error
+    // then fails when it is called rather than here. Writing a cache entry
+    // needs every body, so a miss still parses them all; a script with a
+    // broken body is simply not cached, and behaves the same either way.
+    public static Result load(byte[] bytes, PrintStream errors, boolean lazyBodies) throws IOException {
+        Map<String, List<Stmt>> inMemory = memory;
+        Path dir = cacheDir();
+        if (dir == null && inMemory == null) {
+            return parse(bytes, errors, lazyBodies);
+        }
+
+        String key = hash(bytes);
+        if (inMemory != null) {
+            List<Stmt> held = inMemory.get(key);
+            if (held != null) {
+                return new Result(held, 0);
+            }
+        }
+        Path entry = dir != null ? dir.resolve(key + ".pavac") : null;
+        List<Stmt> cached = entry != null ? read(entry, key, lazyBodies) : null;
+        if (cached != null) {
+            remember(key, cached);
+            return new Result(cached, 0);
+        }
+
+        Result result = parse(bytes, errors, lazyBodies);
+        // Scripts with lexical errors are not cached, so the errors are reported on every run.
+        if (result.errorCode == 0) {
+            if (entry != null) {
+                write(dir, entry, key, result.statements);
+            }
+            remember(key, result.statements);
+        }
+        return result;
+    }
+
+    // Also keeps recently loaded ASTs in memory, for long-lived processes
+    // such as the server. Parsed statements are never mutated, so they can
+    // be shared by any number of interpreters and threads.
+    public static synchronized void retainInMemory() {
+        if (memory == null) {
+            memory = Collections.synchronizedMap(new LinkedHashMap<String, List<Stmt>>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<Stmt>> eldest) {
+                    return size() > MEMORY_ENTRIES;
+                }
+            });
+        }
+    }
+
+    private static void remember(String key, List<Stmt> statements) {
+        Map<String, List<Stmt>> inMemory = memory;
+        if (inMemory != null) {
+            inMemory.put(key, statements);
+        }
+    }
+
+    private static Result parse(byte[] bytes, PrintStream errors, boolean lazyBodies) throws IOException {
+        // Decode strictly, as Files.readString does, so malformed UTF-8 is an I/O error.
+        String source = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+        Lexer lexer = new Lexer(source);
+        lexer.errors = errors;
+        Parser parser = new Parser(lexer.scanTokenBuffer(), lazyBodies);
+        List<Stmt> statements = parser.parse();
+        return new Result(statements, lexer.errorCode);
+    }
+
+    private static List<Stmt> read(Path entry, String key, boolean lazyBodies) {
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try (InputStream file = Files.newInputStream(entry);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(file, 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || !in.readUTF().equals(key)) {
+                return null;
+            }
+            return AstCodec.read(in, lazyBodies);
+        } catch (IOException | RuntimeException | StackOverflowError e) {
+            // Truncated, corrupt or too deeply nested entry: parse again and overwrite it.
+            return null;
+        }
+    }
+
+    private static void write(Path dir, Path entry, String key, List<Stmt> statements) {
+        Path temp = null;
+        try {
+            Files.createDirectories(dir);
+            temp = Files.createTempFile(dir, key, ".tmp");
+            try (OutputStream file = Files.newOutputStream(temp);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeUTF(key);
+                AstCodec.write(statements, out);
+            }
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+        } catch (IOException | RuntimeException | StackOverflowError e) {
+            // The cache is an optimization only; an AST too deep to encode is not cached.
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    // Hex SHA-256 of source bytes, salted with the interpreter build.
+    public static String hash(byte[] source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            if (SALT != null) {
+                digest.update(SALT.getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update(source);
+            byte[] hash = digest.digest();
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The cache directory, or null when caching is disabled. Module
+    // snapshots are kept here as well.
+    public static Path cacheDir() {
+        if (SALT == null || isSet(System.getenv("PAVA_NO_CACHE"))) {
+            return null;
+        }
+        return location();
+    }
+
+    // Where pava keeps its caches, whether or not the AST cache is enabled.
+    // Null when no location can be determined.
+    public static Path location() {
+        String dir = System.getenv("PAVA_CACHE_DIR");
+        if (isSet(dir)) {
+            return Path.of(dir);
+        }
+        String xdg = System.getenv("XDG_CACHE_HOME");
+        if (isSet(xdg)) {
+            return Path.of(xdg, "pava");
+        }
+        String home = System.getProperty("user.home");
+        if (isSet(home)) {
+            return Path.of(home, ".cache", "pava");
+        }
+        return null;
+    }
+
+    private static boolean isSet(String value) {
+        return value != null && !value.isEmpty();
+    }
+
+    // Version, format and the identity of the running interpreter build (the
+    // jar's size and modification time), so a rebuilt pava never reads entries
+    // written by a different parser. Null disables the cache when the build
+    // cannot be identified.
+    private static String buildSalt() {
+        StringBuilder salt = new StringBuilder("pavac/").append(FORMAT).append('/').append(VERSION);
+        try {
+            Path code = Path.of(AstCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (Files.isRegularFile(code)) {
+                salt.append('/').append(Files.size(code)).append('/').append(Files.getLastModifiedTime(code).toMillis());
+            } else {
+                // Running from a classes directory: key on this class file.
+                Path self = code.resolve("parser/AstCache.class");
+                salt.append('/').append(Files.getLastModifiedTime(self).toMillis());
+            }
+        } catch (Exception e) {
+            return null;
+        }
+        return salt.append('\0').toString();
+    }
+}
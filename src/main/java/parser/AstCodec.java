@@ -0,0 +1,656 @@
+package parser;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lexer.TokenType;
+
+/*
+    Compact binary form of a parsed program, used by AstCache for .pavac files.
+    Layout: a string table (lexemes and string literals, each stored once),
+    then the statements as a pre-order walk of tagged nodes. Names, operator
+    types and lines are stored wherever the node keeps them, so errors report
+    the same line numbers as a freshly parsed script. Function bodies are
+    prefixed with their length in bytes, so a reader can skip them and decode
+    each one when it is first called.
+*/
+final class AstCodec {
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    // Node tags; 0 is a null child.
+    private static final int BINARY = 1, GROUPING = 2, LITERAL = 3, UNARY = 4, VARIABLE = 5,
+            ASSIGN = 6, LOGICAL = 7, CALL = 8, GET = 9, ARRAY = 10, INDEX = 11,
+            INDEX_ASSIGN = 12, ARRAY_FIXED_SIZE = 13;
+    private static final int PRINT = 1, EXPRESSION = 2, VAR = 3, BLOCK = 4, IF = 5, WHILE = 6,
+            FUNCTION = 7, RETURN = 8, IMPORT = 9, EXPORT = 10;
+
+    // Literal value tags; SMALL_INT is a non-negative integral number stored as a varint.
+    private static final int NIL = 0, FALSE = 1, TRUE = 2, NUMBER = 3, STRING = 4, SMALL_INT = 5;
+
+    private AstCodec() {
+    }
+
+    static void write(List<Stmt> statements, DataOutputStream out) throws IOException {
+        Writer writer = new Writer();
+        for (Stmt stmt : statements) {
+            writer.stmt(stmt);
+        }
+        out.writeInt(writer.strings.size());
+        for (String s : writer.strings) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.writeInt(statements.size());
+        out.writeInt(writer.body.size());
+        writer.body.writeTo(out);
+    }
+
+    static List<Stmt> read(DataInputStream in, boolean lazyBodies) throws IOException {
+        int stringCount = in.readInt();
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8).intern();
+        }
+        int statementCount = in.readInt();
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        Reader reader = new Reader(body, strings, lazyBodies);
+        List<Stmt> statements = new ArrayList<>(statementCount);
+        for (int i = 0; i < statementCount; i++) {
+            statements.add(reader.stmt());
+        }
+        if (reader.position != body.length) {
+            throw new IOException("Trailing data in compiled AST.");
+        }
+        return statements;
+    }
+
+    private static final class Writer implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+        final List<String> strings = new ArrayList<>();
+        final Map<String, Integer> stringIndex = new HashMap<>();
+        final Bytes body = new Bytes();
+        int lastLine = 0;
+
+        void stmt(Stmt stmt) {
+            if (stmt == null) {
+                body.varint(0);
+            } else {
+                stmt.accept(this);
+            }
+        }
+
+        void expr(Expr expr) {
+            if (expr == null) {
+                body.varint(0);
+            } else {
+                expr.accept(this);
+            }
+        }
+
+        void exprs(List<Expr> exprs) {
+            body.varint(exprs.size());
+            for (Expr expr : exprs) {
+                expr(expr);
+            }
+        }
+
+        void stmts(List<Stmt> stmts) {
+            body.varint(stmts.size());
+            for (Stmt stmt : stmts) {
+                stmt(stmt);
+            }
+        }
+
+        void string(String s) {
+            Integer index = stringIndex.get(s);
+            if (index == null) {
+                index = strings.size();
+                strings.add(s);
+                stringIndex.put(s, index);
+            }
+            body.varint(index);
+        }
+
+        void value(Object value) {
+            if (value == null) {
+                body.varint(NIL);
+            } else if (value instanceof Boolean) {
+                body.varint((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Double) {
+                double number = (Double) value;
+                if (number >= 0 && number <= Integer.MAX_VALUE && number == Math.rint(number)
+                        && Double.doubleToRawLongBits(number) != Double.doubleToRawLongBits(-0.0)) {
+                    body.varint(SMALL_INT);
+                    body.varint((int) number);
+                } else {
+                    body.varint(NUMBER);
+                    body.fixed64(Double.doubleToRawLongBits(number));
+                }
+            } else if (value instanceof String) {
+                body.varint(STRING);
+                string((String) value);
+            } else {
+                throw new IllegalArgumentException("Cannot encode literal " + value.getClass().getName());
+            }
+        }
+
+        void operator(TokenType type, int line) {
+            body.varint(type.ordinal());
+            line(line);
+        }
+
+        void name(String name, int line) {
+            string(name);
+            line(line);
+        }
+
+        void line(int line) {
+            // Lines are stored as zigzag deltas from the previous line, usually one byte.
+            int delta = line - lastLine;
+            body.varint((delta << 1) ^ (delta >> 31));
+            lastLine = line;
+        }
+
+        @Override
+        public Void visitBinaryExpr(Expr.Binary expr) {
+            body.varint(BINARY);
+            expr(expr.left);
+            operator(expr.operator, expr.line);
+            expr(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.Grouping expr) {
+            body.varint(GROUPING);
+            expr(expr.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.Literal expr) {
+            body.varint(LITERAL);
+            value(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.Unary expr) {
+            body.varint(UNARY);
+            operator(expr.operator, expr.line);
+            expr(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(Expr.Variable expr) {
+            body.varint(VARIABLE);
+            name(expr.name, expr.line);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpr(Expr.Assign expr) {
+            body.varint(ASSIGN);
+            name(expr.name, expr.line);
+            expr(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitLogicalExpr(Expr.Logical expr) {
+            body.varint(LOGICAL);
+            expr(expr.left);
+            operator(expr.operator, expr.line);
+            expr(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitCallExpr(Expr.Call expr) {
+            body.varint(CALL);
+            expr(expr.callee);
+            line(expr.line);
+            exprs(expr.arguments);
+            return null;
+        }
+
+        @Override
+        public Void visitGetExpr(Expr.Get expr) {
+            body.varint(GET);
+            expr(expr.object);
+            name(expr.name, expr.line);
+            return null;
+        }
+
+        @Override
+        public Void visitArrayExpr(Expr.Array expr) {
+            body.varint(ARRAY);
+            exprs(expr.elements);
+            return null;
+        }
+
+        @Override
+        public Void visitIndexExpr(Expr.Index expr) {
+            body.varint(INDEX);
+            expr(expr.array);
+            expr(expr.index);
+            return null;
+        }
+
+        @Override
+        public Void visitIndexAssignExpr(Expr.IndexAssign expr) {
+            body.varint(INDEX_ASSIGN);
+            expr(expr.array);
+            expr(expr.index);
+            expr(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitArrayFixedSizeExpr(Expr.ArrayFixedSize expr) {
+            body.varint(ARRAY_FIXED_SIZE);
+            expr(expr.size);
+            return null;
+        }
+
+        @Override
+        public Void visitPrintStmt(Stmt.Print stmt) {
+            body.varint(PRINT);
+            expr(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(Stmt.Expression stmt) {
+            body.varint(EXPRESSION);
+            expr(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitVarStmt(Stmt.Var stmt) {
+            body.varint(VAR);
+            string(stmt.name);
+            expr(stmt.initializer);
+            return null;
+        }
+
+        @Override
+        public Void visitBlockStmt(Stmt.Block stmt) {
+            body.varint(BLOCK);
+            stmts(stmt.statements);
+            return null;
+        }
+
+        @Override
+        public Void visitIfStmt(Stmt.If stmt) {
+            body.varint(IF);
+            expr(stmt.condition);
+            stmt(stmt.thenBranch);
+            stmt(stmt.elseBranch);
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStmt(Stmt.While stmt) {
+            body.varint(WHILE);
+            expr(stmt.condition);
+            stmt(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionStmt(Stmt.Function stmt) {
+            body.varint(FUNCTION);
+            name(stmt.name, stmt.line);
+            body.varint(stmt.params.size());
+            for (Stmt.Function.Parameter param : stmt.params) {
+                name(param.name, param.line);
+                expr(param.defaultValue);
+            }
+            // Lines after the body continue from the line before it, so a
+            // reader that skips the body stays in step.
+            int lineBefore = lastLine;
+            int lengthAt = body.reserveFixed32();
+            stmts(stmt.body());
+            body.patchFixed32(lengthAt, body.size() - lengthAt - 4);
+            lastLine = lineBefore;
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStmt(Stmt.Return stmt) {
+            body.varint(RETURN);
+            expr(stmt.value);
+            return null;
+        }
+
+        @Override
+        public Void visitImportStmt(Stmt.Import stmt) {
+            body.varint(IMPORT);
+            string(stmt.path);
+            return null;
+        }
+
+        @Override
+        public Void visitExportStmt(Stmt.Export stmt) {
+            body.varint(EXPORT);
+            string(stmt.name);
+            return null;
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] body;
+        private final String[] strings;
+        private final boolean lazyBodies;
+        int position = 0;
+        int lastLine = 0;
+
+        Reader(byte[] body, String[] strings, boolean lazyBodies) {
+            this.body = body;
+            this.strings = strings;
+            this.lazyBodies = lazyBodies;
+        }
+
+        Stmt stmt() throws IOException {
+            int tag = varint();
+            switch (tag) {
+                case 0:
+                    return null;
+                case PRINT:
+                    return new Stmt.Print(expr());
+                case EXPRESSION:
+                    return new Stmt.Expression(expr());
+                case VAR: {
+                    String name = string();
+                    return new Stmt.Var(name, expr());
+                }
+                case BLOCK:
+                    return new Stmt.Block(stmts());
+                case IF: {
+                    Expr condition = expr();
+                    Stmt thenBranch = stmt();
+                    return new Stmt.If(condition, thenBranch, stmt());
+                }
+                case WHILE: {
+                    Expr condition = expr();
+                    return new Stmt.While(condition, stmt());
+                }
+                case FUNCTION: {
+                    String name = string();
+                    int line = line();
+                    Stmt.Function.Parameter[] params = new Stmt.Function.Parameter[varint()];
+                    for (int i = 0; i < params.length; i++) {
+                        String paramName = string();
+                        int paramLine = line();
+                        params[i] = new Stmt.Function.Parameter(paramName, paramLine, expr());
+                    }
+                    int length = fixed32();
+                    int start = position;
+                    int lineBefore = lastLine;
+                    if (length < 0 || length > body.length - start) {
+                        throw new IOException("Function body out of range.");
+                    }
+                    position = start + length;
+                    if (lazyBodies) {
+                        return new Stmt.Function(name, line, List.of(params),
+                                () -> functionBody(start, length, lineBefore));
+                    }
+                    return new Stmt.Function(name, line, List.of(params), functionBody(start, length, lineBefore));
+                }
+                case RETURN:
+                    return new Stmt.Return(expr());
+                case IMPORT:
+                    return new Stmt.Import(string());
+                case EXPORT:
+                    return new Stmt.Export(string());
+                default:
+                    throw new IOException("Unknown statement tag " + tag);
+            }
+        }
+
+        Expr expr() throws IOException {
+            int tag = varint();
+            switch (tag) {
+                case 0:
+                    return null;
+                case BINARY: {
+                    Expr left = expr();
+                    TokenType operator = operator();
+                    int line = line();
+                    return new Expr.Binary(left, operator, line, expr());
+                }
+                case GROUPING:
+                    return new Expr.Grouping(expr());
+                case LITERAL:
+                    return new Expr.Literal(value());
+                case UNARY: {
+                    TokenType operator = operator();
+                    int line = line();
+                    return new Expr.Unary(operator, line, expr());
+                }
+                case VARIABLE: {
+                    String name = string();
+                    return new Expr.Variable(name, line());
+                }
+                case ASSIGN: {
+                    String name = string();
+                    int line = line();
+                    return new Expr.Assign(name, line, expr());
+                }
+                case LOGICAL: {
+                    Expr left = expr();
+                    TokenType operator = operator();
+                    int line = line();
+                    return new Expr.Logical(left, operator, line, expr());
+                }
+                case CALL: {
+                    Expr callee = expr();
+                    int line = line();
+                    return new Expr.Call(callee, line, exprs());
+                }
+                case GET: {
+                    Expr object = expr();
+                    String name = string();
+                    return new Expr.Get(object, name, line());
+                }
+                case ARRAY:
+                    return new Expr.Array(exprs());
+                case INDEX: {
+                    Expr array = expr();
+                    return new Expr.Index(array, expr());
+                }
+                case INDEX_ASSIGN: {
+                    Expr array = expr();
+                    Expr index = expr();
+                    return new Expr.IndexAssign(array, index, expr());
+                }
+                case ARRAY_FIXED_SIZE:
+                    return new Expr.ArrayFixedSize(expr());
+                default:
+                    throw new IOException("Unknown expression tag " + tag);
+            }
+        }
+
+        List<Expr> exprs() throws IOException {
+            Expr[] exprs = new Expr[varint()];
+            for (int i = 0; i < exprs.length; i++) {
+                if ((exprs[i] = expr()) == null) {
+                    throw new IOException("Missing list element.");
+                }
+            }
+            return List.of(exprs);
+        }
+
+        List<Stmt> stmts() throws IOException {
+            Stmt[] stmts = new Stmt[varint()];
+            for (int i = 0; i < stmts.length; i++) {
+                if ((stmts[i] = stmt()) == null) {
+                    throw new IOException("Missing list element.");
+                }
+            }
+            return List.of(stmts);
+        }
+
+        // Decodes the function body stored at start. Lazily decoded bodies
+        // come from an entry whose header was already checked, so damage
+        // found this late is reported as an unchecked error.
+        List<Stmt> functionBody(int start, int length, int lineBefore) {
+            Reader reader = new Reader(body, strings, lazyBodies);
+            reader.position = start;
+            reader.lastLine = lineBefore;
+            try {
+                List<Stmt> stmts = reader.stmts();
+                if (reader.position != start + length) {
+                    throw new IOException("Function body length mismatch.");
+                }
+                return stmts;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Corrupt compiled AST: " + e.getMessage(), e);
+            }
+        }
+
+        TokenType operator() throws IOException {
+            int type = varint();
+            if (type >= TOKEN_TYPES.length) {
+                throw new IOException("Unknown operator " + type);
+            }
+            return TOKEN_TYPES[type];
+        }
+
+        int line() throws IOException {
+            int delta = varint();
+            int line = lastLine + ((delta >>> 1) ^ -(delta & 1));
+            lastLine = line;
+            return line;
+        }
+
+        Object value() throws IOException {
+            int tag = varint();
+            switch (tag) {
+                case NIL:
+                    return null;
+                case FALSE:
+                    return false;
+                case TRUE:
+                    return true;
+                case NUMBER:
+                    return Double.longBitsToDouble(fixed64());
+                case SMALL_INT:
+                    return (double) varint();
+                case STRING:
+                    return string();
+                default:
+                    throw new IOException("Unknown literal tag " + tag);
+            }
+        }
+
+        String string() throws IOException {
+            int index = varint();
+            if (index >= strings.length) {
+                throw new IOException("String index out of range.");
+            }
+            return strings[index];
+        }
+
+        int varint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (position >= body.length) {
+                    throw new IOException("Truncated compiled AST.");
+                }
+                byte b = body[position++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint.");
+        }
+
+        int fixed32() throws IOException {
+            if (position + 4 > body.length) {
+                throw new IOException("Truncated compiled AST.");
+            }
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (body[position++] & 0xff);
+            }
+            return value;
+        }
+
+        long fixed64() throws IOException {
+            if (position + 8 > body.length) {
+                throw new IOException("Truncated compiled AST.");
+            }
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (body[position++] & 0xff);
+            }
+            return value;
+        }
+    }
+
+    // Growable byte array for the node stream.
+    private static final class Bytes {
+        private byte[] data = new byte[1024];
+        private int size = 0;
+
+        void varint(int value) {
+            while ((value & ~0x7f) != 0) {
+                put((byte) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            put((byte) value);
+        }
+
+        void fixed64(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                put((byte) (value >>> shift));
+            }
+        }
+
+        // Leaves room for a fixed32 written later with patchFixed32.
+        int reserveFixed32() {
+            int at = size;
+            for (int i = 0; i < 4; i++) {
+                put((byte) 0);
+            }
+            return at;
+        }
+
+        void patchFixed32(int at, int value) {
+            for (int i = 0; i < 4; i++) {
+                data[at + i] = (byte) (value >>> (24 - 8 * i));
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.write(data, 0, size);
+        }
+
+        private void put(byte b) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = b;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package parser;
 
-import lexer.Token;
 import lexer.TokenType;
 import parser.Expr.Array;
 import parser.Expr.ArrayFixedSize;
@@ -21,7 +20,7 @@ public class AstPrinter implements Expr.Visitor<String> {
 
   @Override
   public String visitBinaryExpr(Expr.Binary expr) {
-    return parenthesize(expr.operator.lexeme, expr.left, expr.right);
+    return parenthesize(symbol(expr.operator), expr.left, expr.right);
   }
 
   @Override
@@ -37,12 +36,12 @@ public class AstPrinter implements Expr.Visitor<String> {
 
   @Override
   public String visitUnaryExpr(Expr.Unary expr) {
-    return parenthesize(expr.operator.lexeme, expr.right);
+    return parenthesize(symbol(expr.operator), expr.right);
   }
 
   @Override
   public String visitVariableExpr(Expr.Variable expr) {
-    return "(var " + expr.name.lexeme + ")";
+    return "(var " + expr.name + ")";
   }
 
   @Override
@@ -50,6 +49,24 @@ public class AstPrinter implements Expr.Visitor<String> {
     return expr.name + " = " + expr.value;
   }
 
+  // Nodes keep only the operator's type; map it back to its source text.
+  private static String symbol(TokenType operator) {
+    switch (operator) {
+      case PLUS: return "+";
+      case MINUS: return "-";
+      case STAR: return "*";
+      case SLASH: return "/";
+      case BANG: return "!";
+      case BANG_EQUAL: return "!=";
+      case EQUAL_EQUAL: return "==";
+      case LESS: return "<";
+      case LESS_EQUAL: return "<=";
+      case GREATER: return ">";
+      case GREATER_EQUAL: return ">=";
+      default: return operator.name();
+    }
+  }
+
   private String parenthesize(String name, Expr... exprs) {
     StringBuilder builder = new StringBuilder();
 
@@ -65,10 +82,9 @@ public class AstPrinter implements Expr.Visitor<String> {
 
   public static void main(String[] args) {
     Expr expression = new Expr.Binary(
-        new Expr.Unary(
-            new Token(TokenType.MINUS, "-", null, 1),
+        new Expr.Unary(TokenType.MINUS, 1,
             new Expr.Literal(123)),
-        new Token(TokenType.STAR, "*", null, 1),
+        TokenType.STAR, 1,
         new Expr.Grouping(
             new Expr.Literal(45.67)));
 
@@ -2,8 +2,14 @@ package parser;
 
 import java.util.List;
 
-import lexer.Token;
-
+import lexer.TokenType;
+
+/*
+    Expression nodes. Nodes keep only what evaluation and error reporting
+    need: identifiers as interned name strings, operators as their token
+    type, and the source line. No lexer tokens are retained, so a parsed
+    program costs little more than its node objects.
+*/
 public abstract class Expr {
   public interface Visitor<R> {
     R visitBinaryExpr(Binary expr);
@@ -34,9 +40,10 @@ public abstract class Expr {
   }
 
   public static class Binary extends Expr {
-    Binary(Expr left, Token operator, Expr right) {
+    Binary(Expr left, TokenType operator, int line, Expr right) {
       this.left = left;
       this.operator = operator;
+      this.line = line;
       this.right = right;
     }
 
@@ -46,7 +53,8 @@ public abstract class Expr {
     }
 
     public final Expr left;
-    public final Token operator;
+    public final TokenType operator;
+    public final int line;
     public final Expr right;
   }
 
@@ -81,8 +89,9 @@ public abstract class Expr {
   }
 
   public static class Unary extends Expr {
-    Unary(Token operator, Expr right) {
+    Unary(TokenType operator, int line, Expr right) {
       this.operator = operator;
+      this.line = line;
       this.right = right;
     }
 
@@ -91,15 +100,18 @@ public abstract class Expr {
       return visitor.visitUnaryExpr(this);
     }
 
-    public final Token operator;
+    public final TokenType operator;
+    public final int line;
     public final Expr right;
   }
 
   public static class Variable extends Expr {
-    public final Token name;
+    public final String name;
+    public final int line;
 
-    public Variable(Token name) {
+    public Variable(String name, int line) {
       this.name = name;
+      this.line = line;
     }
 
     @Override
@@ -109,11 +121,13 @@ public abstract class Expr {
   }
 
   public static class Assign extends Expr {
-    public final Token name;
+    public final String name;
+    public final int line;
     public final Expr value;
 
-    public Assign(Token name, Expr value) {
+    public Assign(String name, int line, Expr value) {
       this.name = name;
+      this.line = line;
       this.value = value;
     }
 
@@ -125,12 +139,14 @@ public abstract class Expr {
 
   public static class Logical extends Expr {
     public final Expr left;
-    public final Token operator;
+    public final TokenType operator;
+    public final int line;
     public final Expr right;
 
-    public Logical(Expr left, Token operator, Expr right) {
+    public Logical(Expr left, TokenType operator, int line, Expr right) {
       this.left = left;
       this.operator = operator;
+      this.line = line;
       this.right = right;
     }
 
@@ -142,12 +158,12 @@ public abstract class Expr {
 
   public static class Call extends Expr {
     public final Expr callee;
-    public final Token paren; // The closing parenthesis.
+    public final int line; // Of the closing parenthesis.
     public final java.util.List<Expr> arguments;
 
-    public Call(Expr callee, Token paren, java.util.List<Expr> arguments) {
+    public Call(Expr callee, int line, java.util.List<Expr> arguments) {
       this.callee = callee;
-      this.paren = paren;
+      this.line = line;
       this.arguments = arguments;
     }
 
@@ -159,11 +175,13 @@ public abstract class Expr {
 
   public static class Get extends Expr {
     public final Expr object;
-    public final Token name;
+    public final String name;
+    public final int line;
 
-    public Get(Expr object, Token name) {
+    public Get(Expr object, String name, int line) {
       this.object = object;
       this.name = name;
+      this.line = line;
     }
 
     @Override
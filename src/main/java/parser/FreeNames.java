@@ -0,0 +1,196 @@
+package parser;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+    The names a function can look up or assign outside its own scope: every
+    variable its body uses, including those used by functions nested in it
+    and by their default values (which are evaluated in the caller's scope),
+    less its parameters. A name declared with let inside the body is kept,
+    since a use before the declaration reads the outer variable.
+*/
+final class FreeNames implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final Set<String> names = new LinkedHashSet<>();
+
+    private FreeNames() {
+    }
+
+    static List<String> of(Stmt.Function function) {
+        FreeNames walk = new FreeNames();
+        walk.stmts(function.body());
+        for (Stmt.Function.Parameter param : function.params) {
+            walk.names.remove(param.name);
+        }
+        return List.copyOf(walk.names);
+    }
+
+    private void stmts(List<Stmt> statements) {
+        for (Stmt stmt : statements) {
+            stmt.accept(this);
+        }
+    }
+
+    private void expr(Expr expr) {
+        if (expr != null) {
+            expr.accept(this);
+        }
+    }
+
+    private void exprs(List<Expr> exprs) {
+        for (Expr expr : exprs) {
+            expr.accept(this);
+        }
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        expr(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        expr(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        expr(stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        stmts(stmt.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        expr(stmt.condition);
+        stmt.thenBranch.accept(this);
+        if (stmt.elseBranch != null) {
+            stmt.elseBranch.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        expr(stmt.condition);
+        stmt.body.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        names.addAll(stmt.freeNames());
+        for (Stmt.Function.Parameter param : stmt.params) {
+            expr(param.defaultValue);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        expr(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitExportStmt(Stmt.Export stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        expr(expr.left);
+        expr(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        expr(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        expr(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        names.add(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        names.add(expr.name);
+        expr(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        expr(expr.left);
+        expr(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        expr(expr.callee);
+        exprs(expr.arguments);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        expr(expr.object);
+        return null;
+    }
+
+    @Override
+    public Void visitArrayExpr(Expr.Array expr) {
+        exprs(expr.elements);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        expr(expr.array);
+        expr(expr.index);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexAssignExpr(Expr.IndexAssign expr) {
+        expr(expr.array);
+        expr(expr.index);
+        expr(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitArrayFixedSizeExpr(Expr.ArrayFixedSize expr) {
+        expr(expr.size);
+        return null;
+    }
+}
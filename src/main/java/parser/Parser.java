@@ -1,17 +1,53 @@
 package parser;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.function.Supplier;
 import lexer.Token;
+import lexer.TokenBuffer;
+import lexer.TokenSource;
 import lexer.TokenType;
 
 public class Parser {
-    private final List<Token> tokens;
-    private int current = 0;
+    // The parser only ever looks at the current token and the one before it,
+    // so it pulls tokens one at a time instead of indexing a list. A
+    // TokenBuffer is read by index, which lets function bodies be skipped.
+    private final TokenSource tokens;
+    private final TokenBuffer buffer;
+    private final boolean lazyBodies;
+    private int position; // Index of current in buffer.
+    private Token current;
+    private Token previous;
 
     public Parser(List<Token> tokens) {
+        this(listSource(tokens));
+    }
+
+    public Parser(TokenBuffer buffer) {
+        this(buffer, false);
+    }
+
+    // With lazyBodies, function bodies are only checked for matching braces
+    // and are parsed from the buffer when first called (Stmt.Function.body()).
+    // Syntax errors inside them surface then instead of here.
+    public Parser(TokenBuffer buffer, boolean lazyBodies) {
+        this(buffer, 0, lazyBodies);
+    }
+
+    private Parser(TokenBuffer buffer, int position, boolean lazyBodies) {
+        this.tokens = null;
+        this.buffer = buffer;
+        this.lazyBodies = lazyBodies;
+        this.position = position;
+        this.current = buffer.token(position);
+    }
+
+    public Parser(TokenSource tokens) {
         this.tokens = tokens;
+        this.buffer = null;
+        this.lazyBodies = false;
+        this.current = tokens.next();
     }
 
     public List<String> parseStrings() {
@@ -32,6 +68,14 @@ public class Parser {
         return statements;
     }
 
+    // Parses a single top-level statement, or returns null at the end of input.
+    // Lets a caller execute statements as they arrive instead of after parse().
+    public Stmt nextStatement() {
+        if (isAtEnd())
+            return null;
+        return statement();
+    }
+
     private Stmt statement() {
         if (match(TokenType.IMPORT))
             return importStatement();
@@ -61,23 +105,22 @@ public class Parser {
         // We expect a module path as a string literal.
         Token path = consume(TokenType.STRING, "Expect module path as a string.");
         consume(TokenType.SEMICOLON, "Expect ';' after import.");
-        return new Stmt.Import(path);
+        return new Stmt.Import((String) path.literal);
     }
 
     private Stmt exportStatement() {
         Token name = consume(TokenType.IDENTIFIER, "Expect module name after 'export'.");
         consume(TokenType.SEMICOLON, "Expect ';' after export.");
-        return new Stmt.Export(name);
+        return new Stmt.Export(name.lexeme);
     }
 
     private Stmt returnStatement() {
-        Token keyword = previous();
         Expr value = null;
         if (!check(TokenType.SEMICOLON)) {
             value = expression();
         }
         consume(TokenType.SEMICOLON, "Expect ';' after return value.");
-        return new Stmt.Return(keyword, value);
+        return new Stmt.Return(value);
     }
 
     private Stmt.Function functionDeclaration() {
@@ -91,7 +134,7 @@ public class Parser {
                 if (match(TokenType.EQUAL)) {
                     defaultValue = expression();
                 }
-                parameters.add(new Stmt.Function.Parameter(paramName, defaultValue));
+                parameters.add(new Stmt.Function.Parameter(paramName.lexeme, paramName.line, defaultValue));
             } while (match(TokenType.COMMA));
         }
         consume(TokenType.RIGHT_PAREN, "Expect ')' after parameters.");
@@ -113,8 +156,41 @@ public class Parser {
         }
 
         consume(TokenType.LEFT_BRACE, "Expect '{' before function body.");
+        if (lazyBodies) {
+            return new Stmt.Function(name.lexeme, name.line, List.copyOf(parameters), skipBody());
+        }
         List<Stmt> body = blockStatements(); // Helper that returns List<Stmt>.
-        return new Stmt.Function(name, parameters, body);
+        return new Stmt.Function(name.lexeme, name.line, List.copyOf(parameters), body);
+    }
+
+    // Moves past a function body by matching braces, without building its
+    // tokens, and returns what parses it later from the same buffer.
+    private Supplier<List<Stmt>> skipBody() {
+        int start = position;
+        int depth = 1;
+        int end = start;
+        while (true) {
+            TokenType type = buffer.type(end);
+            if (type == TokenType.EOF) {
+                throw new SyntaxError(buffer.line(end), "Expect '}' after block.");
+            } else if (type == TokenType.LEFT_BRACE) {
+                depth++;
+            } else if (type == TokenType.RIGHT_BRACE && --depth == 0) {
+                break;
+            }
+            end++;
+        }
+        position = end;
+        current = buffer.token(end);
+        advance(); // The closing brace.
+
+        TokenBuffer source = buffer;
+        return () -> {
+            // Bodies of one buffer share its symbol table, so they parse one at a time.
+            synchronized (source) {
+                return new Parser(source, start, true).blockStatements();
+            }
+        };
     }
 
     private List<Stmt> blockStatements() {
@@ -123,7 +199,7 @@ public class Parser {
             statements.add(statement());
         }
         consume(TokenType.RIGHT_BRACE, "Expect '}' after block.");
-        return statements;
+        return List.copyOf(statements);
     }
 
     private Stmt forStatement() {
@@ -165,7 +241,7 @@ public class Parser {
         // run for as while loop (desugar it)
         // If increment exists, execute it at the end of each loop iteration.
         if (increment != null) {
-            body = new Stmt.Block(Arrays.asList(
+            body = new Stmt.Block(List.of(
                     body,
                     new Stmt.Expression(increment)));
         }
@@ -178,7 +254,7 @@ public class Parser {
 
         // If initializer exists, wrap everything in a block.
         if (initializer != null) {
-            body = new Stmt.Block(Arrays.asList(initializer, body));
+            body = new Stmt.Block(List.of(initializer, body));
         }
 
         return body;
@@ -210,7 +286,7 @@ public class Parser {
             statements.add(statement());
         }
         consume(TokenType.RIGHT_BRACE, "Expect '}' after block.");
-        return new Stmt.Block(statements);
+        return new Stmt.Block(List.copyOf(statements));
     }
 
     private Stmt varDeclaration() {
@@ -226,7 +302,7 @@ public class Parser {
             initializer = expression();
         }
         consume(TokenType.SEMICOLON, "Expect ';' after variable declaration.");
-        return new Stmt.Var(name, initializer);
+        return new Stmt.Var(name.lexeme, initializer);
     }
 
     private Stmt printStatement() {
@@ -242,141 +318,205 @@ public class Parser {
         return new Stmt.Expression(expr);
     }
 
-    private Expr expression() {
-        return assignment();
-    }
-
-    // assignment → or ( "=" assignment )?
-    private Expr assignment() {
-        Expr expr = or();
-        if (match(TokenType.EQUAL)) {
-            Token equals = previous();
-            Expr value = assignment(); // right-associative
-            if (expr instanceof Expr.Variable) {
-                Token name = ((Expr.Variable) expr).name;
-                return new Expr.Assign(name, value);
-            } else if (expr instanceof Expr.Index) {
-                Expr.Index indexExpr = (Expr.Index) expr;
-                return new Expr.IndexAssign(indexExpr.array, indexExpr.index, value);
-            }
-            throw error(equals, "Invalid assignment target.");
-        }
-        return expr;
-    }
-
-    // or → and ( "or" and )*
-    private Expr or() {
-        Expr expr = and();
-        while (match(TokenType.OR)) {
-            Token operator = previous();
-            Expr right = and();
-            expr = new Expr.Logical(expr, operator, right);
-        }
-        return expr;
-    }
-
-    // and → equality ( "and" equality )*
-    private Expr and() {
-        Expr expr = equality();
-        while (match(TokenType.AND)) {
-            Token operator = previous();
-            Expr right = equality();
-            expr = new Expr.Logical(expr, operator, right);
-        }
-        return expr;
-    }
-
-    private Expr equality() {
-        Expr expr = comparison();
-
-        while (match(TokenType.EQUAL_EQUAL, TokenType.BANG_EQUAL)) {
-            Token operator = previous();
-            Expr right = comparison();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-        return expr;
-    }
-
-    private Expr comparison() {
-        Expr expr = term();
-
-        while (match(TokenType.LESS, TokenType.LESS_EQUAL, TokenType.GREATER, TokenType.GREATER_EQUAL)) {
-            Token operator = previous();
-            Expr right = term();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-        return expr;
-    }
-
-    private Expr term() {
-        Expr expr = factor();
-
-        // Prevent arithmetic on booleans/nil.
-        if (isBooleanOrNil(expr))
-            return expr;
-
-        while (match(TokenType.PLUS, TokenType.MINUS)) {
-            Token operator = previous();
-            Expr right = factor();
-            expr = new Expr.Binary(expr, operator, right);
+    /*
+        Expressions are parsed by precedence climbing over explicit stacks
+        rather than one Java call per grammar rule:
+
+        assignment → or ( "=" assignment )?
+        or         → and ( "or" and )*
+        and        → equality ( "and" equality )*
+        equality   → comparison ( ( "==" | "!=" ) comparison )*
+        comparison → term ( ( "<" | "<=" | ">" | ">=" ) term )*
+        term       → factor ( ( "+" | "-" ) factor )*
+        factor     → unary ( ( "*" | "/" ) unary )*
+        unary      → ( "!" | "-" ) unary | call
+        call       → primary ( "(" arguments? ")" | "." IDENTIFIER | "[" expression "]" )*
+
+        Binary operators get their binding power from PRECEDENCE, indexed by
+        token type. Parentheses, argument lists, index brackets and array
+        literals push a Context instead of recursing, so long operator
+        chains and deeply nested expressions parse in constant Java stack.
+    */
+    private static final int[] PRECEDENCE = new int[TokenType.values().length];
+    private static final int TERM = 5;
+
+    static {
+        PRECEDENCE[TokenType.OR.ordinal()] = 1;
+        PRECEDENCE[TokenType.AND.ordinal()] = 2;
+        PRECEDENCE[TokenType.EQUAL_EQUAL.ordinal()] = 3;
+        PRECEDENCE[TokenType.BANG_EQUAL.ordinal()] = 3;
+        PRECEDENCE[TokenType.LESS.ordinal()] = 4;
+        PRECEDENCE[TokenType.LESS_EQUAL.ordinal()] = 4;
+        PRECEDENCE[TokenType.GREATER.ordinal()] = 4;
+        PRECEDENCE[TokenType.GREATER_EQUAL.ordinal()] = 4;
+        PRECEDENCE[TokenType.PLUS.ordinal()] = TERM;
+        PRECEDENCE[TokenType.MINUS.ordinal()] = TERM;
+        PRECEDENCE[TokenType.STAR.ordinal()] = 6;
+        PRECEDENCE[TokenType.SLASH.ordinal()] = 6;
+    }
+
+    // What an open Context is parsing, which decides how it is closed.
+    private enum Nesting { NONE, GROUPING, ARGUMENT, INDEX, ELEMENT }
+
+    // One expression in progress: operands and operators not yet combined,
+    // unary operators waiting for their operand, and "=" targets so far.
+    private static final class Context {
+        final Nesting nesting;
+        final Expr owner; // The callee or the indexed expression.
+        final List<Expr> items; // Arguments or array elements already parsed.
+        final List<Expr> operands = new ArrayList<>();
+        final List<Token> operators = new ArrayList<>();
+        final List<Token> prefixes = new ArrayList<>();
+        final List<Expr> targets = new ArrayList<>();
+
+        Context(Nesting nesting, Expr owner, List<Expr> items) {
+            this.nesting = nesting;
+            this.owner = owner;
+            this.items = items;
         }
-        return expr;
     }
 
-    private Expr factor() {
-        Expr expr = unary();
-
-        while (match(TokenType.STAR, TokenType.SLASH)) {
-            Token operator = previous();
-            Expr right = unary();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-        return expr;
-    }
+    private Expr expression() {
+        ArrayDeque<Context> open = new ArrayDeque<>();
+        Context context = new Context(Nesting.NONE, null, null);
+        next: while (true) {
+            while (match(TokenType.BANG, TokenType.MINUS)) {
+                context.prefixes.add(previous());
+            }
+            Expr operand;
+            if (match(TokenType.LEFT_PAREN)) {
+                open.push(context);
+                context = new Context(Nesting.GROUPING, null, null);
+                continue;
+            } else if (match(TokenType.LEFT_BRACKET)) {
+                if (!check(TokenType.RIGHT_BRACKET)) {
+                    open.push(context);
+                    context = new Context(Nesting.ELEMENT, null, new ArrayList<>());
+                    continue;
+                }
+                consume(TokenType.RIGHT_BRACKET, "Expect ']' after array literal.");
+                operand = new Expr.Array(List.of());
+            } else {
+                operand = primary();
+            }
 
-    private Expr unary() {
-        if (match(TokenType.BANG, TokenType.MINUS)) {
-            Token operator = previous();
-            Expr right = unary();
-            return new Expr.Unary(operator, right);
+            while (true) {
+                // Calls, property access and indexing bind tightest.
+                while (true) {
+                    if (match(TokenType.LEFT_PAREN)) {
+                        if (!check(TokenType.RIGHT_PAREN)) {
+                            open.push(context);
+                            context = new Context(Nesting.ARGUMENT, operand, new ArrayList<>());
+                            continue next;
+                        }
+                        Token paren = consume(TokenType.RIGHT_PAREN, "Expect ')' after arguments.");
+                        operand = new Expr.Call(operand, paren.line, List.of());
+                    } else if (match(TokenType.DOT)) {
+                        Token name = consume(TokenType.IDENTIFIER, "Expect property name after '.'.");
+                        operand = new Expr.Get(operand, name.lexeme, name.line);
+                    } else if (match(TokenType.LEFT_BRACKET)) {
+                        open.push(context);
+                        context = new Context(Nesting.INDEX, operand, null);
+                        continue next;
+                    } else {
+                        break;
+                    }
+                }
+                for (int i = context.prefixes.size() - 1; i >= 0; i--) {
+                    Token operator = context.prefixes.get(i);
+                    operand = new Expr.Unary(operator.type, operator.line, operand);
+                }
+                context.prefixes.clear();
+                context.operands.add(operand);
+
+                int precedence = PRECEDENCE[peek().type.ordinal()];
+                if (precedence > 0) {
+                    reduce(context, precedence);
+                    // Prevent arithmetic on booleans/nil: a term that starts with
+                    // one ends the expression before its '+' or '-'.
+                    if (precedence != TERM || !isBooleanOrNil(context.operands.get(context.operands.size() - 1))) {
+                        context.operators.add(advance());
+                        continue next;
+                    }
+                }
+                reduce(context, 1);
+                Expr value = context.operands.remove(0);
+                if (match(TokenType.EQUAL)) {
+                    context.targets.add(value);
+                    continue next;
+                }
+                value = assignTargets(context.targets, value);
+
+                switch (context.nesting) {
+                    case GROUPING:
+                        consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
+                        operand = new Expr.Grouping(value);
+                        break;
+                    case ARGUMENT:
+                        context.items.add(value);
+                        if (match(TokenType.COMMA)) {
+                            continue next;
+                        }
+                        Token paren = consume(TokenType.RIGHT_PAREN, "Expect ')' after arguments.");
+                        operand = new Expr.Call(context.owner, paren.line, List.copyOf(context.items));
+                        break;
+                    case INDEX:
+                        consume(TokenType.RIGHT_BRACKET, "Expect ']' after index.");
+                        operand = new Expr.Index(context.owner, value);
+                        break;
+                    case ELEMENT:
+                        context.items.add(value);
+                        if (match(TokenType.COMMA)) {
+                            continue next;
+                        }
+                        consume(TokenType.RIGHT_BRACKET, "Expect ']' after array literal.");
+                        operand = new Expr.Array(List.copyOf(context.items));
+                        break;
+                    default:
+                        return value;
+                }
+                // The closed context was an operand of the one that opened it.
+                context = open.pop();
+            }
         }
-        return call();
     }
 
-    // New call() method to support call expressions and property access.
-    private Expr call() {
-        Expr expr = primary();
-        while (true) {
-            if (match(TokenType.LEFT_PAREN)) {
-                expr = finishCall(expr);
-            } else if (match(TokenType.DOT)) {
-                Token name = consume(TokenType.IDENTIFIER, "Expect property name after '.'.");
-                expr = new Expr.Get(expr, name);
-            } else if (match(TokenType.LEFT_BRACKET)) {
-                Expr index = expression();
-                consume(TokenType.RIGHT_BRACKET, "Expect ']' after index.");
-                expr = new Expr.Index(expr, index);
+    // Combines pending operators that bind at least as tightly as minPrecedence.
+    private static void reduce(Context context, int minPrecedence) {
+        List<Token> operators = context.operators;
+        List<Expr> operands = context.operands;
+        while (!operators.isEmpty()
+                && PRECEDENCE[operators.get(operators.size() - 1).type.ordinal()] >= minPrecedence) {
+            Token operator = operators.remove(operators.size() - 1);
+            Expr right = operands.remove(operands.size() - 1);
+            Expr left = operands.remove(operands.size() - 1);
+            if (operator.type == TokenType.OR || operator.type == TokenType.AND) {
+                operands.add(new Expr.Logical(left, operator.type, operator.line, right));
             } else {
-                break;
+                operands.add(new Expr.Binary(left, operator.type, operator.line, right));
             }
         }
-        return expr;
     }
 
-    private Expr finishCall(Expr callee) {
-        List<Expr> arguments = new ArrayList<>();
-        if (!check(TokenType.RIGHT_PAREN)) {
-            do {
-                arguments.add(expression());
-            } while (match(TokenType.COMMA));
+    // Assignment is right-associative: a = b = c assigns c to b, then to a.
+    private Expr assignTargets(List<Expr> targets, Expr value) {
+        for (int i = targets.size() - 1; i >= 0; i--) {
+            Expr target = targets.get(i);
+            if (target instanceof Expr.Variable) {
+                Expr.Variable variable = (Expr.Variable) target;
+                value = new Expr.Assign(variable.name, variable.line, value);
+            } else if (target instanceof Expr.Index) {
+                Expr.Index indexExpr = (Expr.Index) target;
+                value = new Expr.IndexAssign(indexExpr.array, indexExpr.index, value);
+            } else {
+                throw error(previous(), "Invalid assignment target.");
+            }
         }
-        Token paren = consume(TokenType.RIGHT_PAREN, "Expect ')' after arguments.");
-        return new Expr.Call(callee, paren, arguments);
+        targets.clear();
+        return value;
     }
 
     private Expr primary() {
-        if (match(TokenType.LEFT_BRACKET))
-            return arrayLiteral();
         if (match(TokenType.TRUE))
             return new Expr.Literal(true);
         if (match(TokenType.FALSE))
@@ -386,16 +526,9 @@ public class Parser {
         if (match(TokenType.NUMBER))
             return new Expr.Literal(previous().literal);
         if (match(TokenType.STRING))
-            // Wrap the string literal in double quotes.
-            // return new Expr.Literal("\"" + previous().literal + "\"");
             return new Expr.Literal(previous().literal);
         if (match(TokenType.IDENTIFIER))
-            return new Expr.Variable(previous());
-        if (match(TokenType.LEFT_PAREN)) {
-            Expr expr = expression();
-            consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
-            return new Expr.Grouping(expr);
-        }
+            return new Expr.Variable(previous().lexeme, previous().line);
 
         throw new SyntaxError(peek().getLine(), "Error at: '" + peek().getLexeme() + "': Unexpected token");
     }
@@ -417,21 +550,27 @@ public class Parser {
     }
 
     private Token advance() {
-        if (!isAtEnd())
-            current++;
+        if (!isAtEnd()) {
+            previous = current;
+            if (buffer == null) {
+                current = tokens.next();
+            } else {
+                current = buffer.token(++position);
+            }
+        }
         return previous();
     }
 
     private boolean isAtEnd() {
-        return peek().type == TokenType.EOF;
+        return current.type == TokenType.EOF;
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return current;
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return previous;
     }
 
     private Token consume(TokenType type, String message) {
@@ -446,23 +585,28 @@ public class Parser {
 
     // Helper to check if an expression is a boolean literal or nil.
     private boolean isBooleanOrNil(Expr expr) {
+        while (expr instanceof Expr.Grouping) {
+            expr = ((Expr.Grouping) expr).expression;
+        }
         if (expr instanceof Expr.Literal) {
             Object value = ((Expr.Literal) expr).value;
             return (value instanceof Boolean || value == null);
-        } else if (expr instanceof Expr.Grouping) {
-            return isBooleanOrNil(((Expr.Grouping) expr).expression);
         }
         return false;
     }
 
-    private Expr arrayLiteral() {
-        List<Expr> elements = new ArrayList<>();
-        if (!check(TokenType.RIGHT_BRACKET)) {
-            do {
-                elements.add(expression());
-            } while (match(TokenType.COMMA));
-        }
-        consume(TokenType.RIGHT_BRACKET, "Expect ']' after array literal.");
-        return new Expr.Array(elements);
+    private static TokenSource listSource(List<Token> list) {
+        return new TokenSource() {
+            private int next = 0;
+
+            @Override
+            public Token next() {
+                Token token = list.get(next);
+                if (next < list.size() - 1) {
+                    next++;
+                }
+                return token;
+            }
+        };
     }
 }
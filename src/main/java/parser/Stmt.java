@@ -1,9 +1,40 @@
 package parser;
 
-import lexer.Token;
 import java.util.List;
+import java.util.function.Supplier;
 
 public abstract class Stmt {
+    /*
+        Escape analysis for scopes. The only way a scope can outlive the block
+        or call that created it is a fun declared in it, or in a block nested
+        in it, capturing it as the closure. Blocks and functions record whether
+        that can happen when they are built, which is bottom-up, so a nested
+        block's answer is already known and the walk stops there.
+    */
+    static boolean declaresFunction(List<Stmt> statements) {
+        for (Stmt stmt : statements) {
+            if (declaresFunction(stmt)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean declaresFunction(Stmt stmt) {
+        if (stmt instanceof Function) {
+            return true;
+        } else if (stmt instanceof Block) {
+            return ((Block) stmt).scopeEscapes;
+        } else if (stmt instanceof While) {
+            return declaresFunction(((While) stmt).body);
+        } else if (stmt instanceof If) {
+            If branch = (If) stmt;
+            return declaresFunction(branch.thenBranch)
+                    || branch.elseBranch != null && declaresFunction(branch.elseBranch);
+        }
+        return false;
+    }
+
     public interface Visitor<R> {
         R visitPrintStmt(Print stmt);
         R visitExpressionStmt(Expression stmt);
@@ -44,9 +75,9 @@ public abstract class Stmt {
     }
 
     public static class Var extends Stmt {
-        public final Token name;
+        public final String name;
         public final Expr initializer; // may be null if no initializer is provided
-        public Var(Token name, Expr initializer) {
+        public Var(String name, Expr initializer) {
             this.name = name;
             this.initializer = initializer;
         }
@@ -58,8 +89,12 @@ public abstract class Stmt {
 
     public static class Block extends Stmt {
         public final List<Stmt> statements;
+        // False when no fun is declared inside, so nothing can capture the
+        // block's scope and it ends when the block does.
+        public final boolean scopeEscapes;
         public Block(List<Stmt> statements) {
             this.statements = statements;
+            this.scopeEscapes = declaresFunction(statements);
         }
         @Override
         public <R> R accept(Visitor<R> visitor) {
@@ -96,14 +131,62 @@ public abstract class Stmt {
     }
 
     public static class Function extends Stmt {
-        public final Token name;
+        public final String name;
+        public final int line;
         public final List<Parameter> params;  // For now, empty list.
-        public final List<Stmt> body;
-        public Function(Token name, List<Parameter> params, List<Stmt> body) {
+        private volatile List<Stmt> body;
+        private Supplier<List<Stmt>> deferredBody; // Parses the body; null once it is parsed.
+        private boolean scopeEscapes; // Written before body, read after it.
+        private volatile List<String> freeNames;
+        public Function(String name, int line, List<Parameter> params, List<Stmt> body) {
             this.name = name;
+            this.line = line;
             this.params = params;
+            this.scopeEscapes = declaresFunction(body);
             this.body = body;
         }
+
+        // A function whose body is parsed on first use. A syntax error in it
+        // is thrown from body(), every time it is asked for.
+        public Function(String name, int line, List<Parameter> params, Supplier<List<Stmt>> deferredBody) {
+            this.name = name;
+            this.line = line;
+            this.params = params;
+            this.deferredBody = deferredBody;
+        }
+
+        public List<Stmt> body() {
+            List<Stmt> parsed = body;
+            if (parsed == null) {
+                synchronized (this) {
+                    if (body == null) {
+                        List<Stmt> statements = deferredBody.get();
+                        scopeEscapes = declaresFunction(statements);
+                        body = statements;
+                        deferredBody = null;
+                    }
+                    parsed = body;
+                }
+            }
+            return parsed;
+        }
+
+        // As Block.scopeEscapes, for the scope of a call. Parses a lazy body.
+        public boolean scopeEscapes() {
+            body();
+            return scopeEscapes;
+        }
+
+        // The variables the function uses from enclosing scopes (see
+        // FreeNames), worked out on first use. Parses a lazy body.
+        public List<String> freeNames() {
+            List<String> names = freeNames;
+            if (names == null) {
+                names = FreeNames.of(this);
+                freeNames = names;
+            }
+            return names;
+        }
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visitFunctionStmt(this);
@@ -111,21 +194,21 @@ public abstract class Stmt {
 
         // Parameter class with optional default value.
         public static class Parameter {
-            public final Token name;
+            public final String name;
+            public final int line;
             public final Expr defaultValue; // Can be null if no default.
-            public Parameter(Token name, Expr defaultValue) {
+            public Parameter(String name, int line, Expr defaultValue) {
                 this.name = name;
+                this.line = line;
                 this.defaultValue = defaultValue;
             }
         }
     }
 
     public static class Return extends Stmt {
-        public final Token keyword;
         public final Expr value;
     
-        public Return(Token keyword, Expr value) {
-            this.keyword = keyword;
+        public Return(Expr value) {
             this.value = value;
         }
     
@@ -136,8 +219,8 @@ public abstract class Stmt {
     }
 
     public static class Import extends Stmt {
-        public final Token path;  // The module file path (as a string literal).
-        public Import(Token path) {
+        public final String path;  // The module file path (the string literal's value).
+        public Import(String path) {
             this.path = path;
         }
         @Override
@@ -147,8 +230,8 @@ public abstract class Stmt {
     }
 
     public static class Export extends Stmt {
-        public final Token name; // The exported module name.
-        public Export(Token name) {
+        public final String name; // The exported module name.
+        public Export(String name) {
             this.name = name;
         }
         @Override
@@ -0,0 +1,129 @@
+package script;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import javax.script.Bindings;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import interpreter.Environment;
+import interpreter.ExitSignal;
+import interpreter.Interpreter;
+import interpreter.ScriptIo;
+import parser.Stmt;
+
+/*
+    A parsed script. The statements are never mutated, so one compiled
+    script can be evaluated concurrently; each evaluation runs on a fresh
+    Interpreter with its own globals and the context's streams.
+
+    Bindings (global scope, then engine scope) become global variables,
+    with Java numbers converted to Pava numbers. After the script runs, the
+    engine-scope bindings are updated with the variables' final values. If
+    the last statement is an expression, its value is returned.
+*/
+public final class PavaCompiledScript extends CompiledScript {
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final PavaScriptEngine engine;
+    private final List<Stmt> statements;
+
+    PavaCompiledScript(PavaScriptEngine engine, List<Stmt> statements) {
+        this.engine = engine;
+        this.statements = statements;
+    }
+
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        Reader reader = context.getReader();
+        Writer writer = context.getWriter();
+        Writer errorWriter = context.getErrorWriter();
+        InputStream in = reader != null ? new ReaderInputStream(reader) : InputStream.nullInputStream();
+        PrintStream err = new PrintStream(new WriterOutputStream(errorWriter != null ? errorWriter : Writer.nullWriter()),
+                true, StandardCharsets.UTF_8);
+        ScriptIo io = new ScriptIo(in, writer != null ? writer : Writer.nullWriter(), err, null);
+
+        Interpreter interpreter = new Interpreter(io);
+        Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        define(interpreter.globals(), context.getBindings(ScriptContext.GLOBAL_SCOPE));
+        define(interpreter.globals(), bindings);
+
+        try {
+            int last = statements.size() - 1;
+            if (last >= 0 && statements.get(last) instanceof Stmt.Expression) {
+                interpreter.interpret(statements.subList(0, last));
+                return interpreter.evaluate(((Stmt.Expression) statements.get(last)).expression);
+            }
+            interpreter.interpret(statements);
+            return null;
+        } catch (ExitSignal exit) {
+            if (exit.status != 0) {
+                throw new ScriptException("Script exited with status " + exit.status);
+            }
+            return null;
+        } catch (RuntimeException re) {
+            throw new ScriptException(re.getMessage());
+        } finally {
+            try {
+                io.flush();
+            } finally {
+                io.err().flush();
+                copyBack(interpreter.globals(), bindings);
+            }
+        }
+    }
+
+    private static void define(Environment globals, Bindings bindings) {
+        if (bindings == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : bindings.entrySet()) {
+            if (IDENTIFIER.matcher(entry.getKey()).matches()) {
+                globals.define(entry.getKey(), toPava(entry.getValue()));
+            }
+        }
+    }
+
+    private static void copyBack(Environment globals, Bindings bindings) {
+        if (bindings == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : bindings.entrySet()) {
+            if (IDENTIFIER.matcher(entry.getKey()).matches()) {
+                entry.setValue(globals.get(entry.getKey(), 0));
+            }
+        }
+    }
+
+    // Pava numbers are doubles and its arrays are lists.
+    private static Object toPava(Object value) {
+        if (value instanceof Number && !(value instanceof Double)) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Character) {
+            return value.toString();
+        }
+        if (value instanceof List) {
+            List<Object> array = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                array.add(toPava(element));
+            }
+            return array;
+        }
+        return value;
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+}
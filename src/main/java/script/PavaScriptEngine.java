@@ -0,0 +1,87 @@
+package script;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+import lexer.Lexer;
+import parser.Parser;
+import parser.Stmt;
+import parser.SyntaxError;
+
+/*
+    JSR-223 engine. compile() parses once into a PavaCompiledScript that
+    can be evaluated any number of times, from any number of threads;
+    eval() is compile() followed by a single evaluation.
+*/
+public final class PavaScriptEngine extends AbstractScriptEngine implements Compilable {
+    private final PavaScriptEngineFactory factory;
+
+    PavaScriptEngine(PavaScriptEngineFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(script).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return compile(reader).eval(context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        PrintStream errors = new PrintStream(messages, true, StandardCharsets.UTF_8);
+        List<Stmt> statements;
+        Lexer lexer = new Lexer(script);
+        lexer.errors = errors;
+        try {
+            statements = new Parser(lexer.scanTokenBuffer()).parse();
+        } catch (SyntaxError err) {
+            throw new ScriptException("[Syntax Error] " + err.getMessage());
+        }
+        if (lexer.errorCode != 0) {
+            throw new ScriptException(messages.toString(StandardCharsets.UTF_8).trim());
+        }
+        return new PavaCompiledScript(this, statements);
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        StringBuilder source = new StringBuilder();
+        char[] chunk = new char[8192];
+        try {
+            int n;
+            while ((n = script.read(chunk)) != -1) {
+                source.append(chunk, 0, n);
+            }
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+        return compile(source.toString());
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new SimpleBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+}
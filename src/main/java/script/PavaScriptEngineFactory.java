@@ -0,0 +1,96 @@
+package script;
+
+import java.util.List;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+
+import parser.AstCache;
+
+/*
+    JSR-223 entry point, registered in META-INF/services so that
+    new ScriptEngineManager().getEngineByName("pava") finds it.
+*/
+public final class PavaScriptEngineFactory implements ScriptEngineFactory {
+    private static final List<String> NAMES = List.of("pava", "Pava", "pavalang");
+    private static final List<String> EXTENSIONS = List.of("pava");
+    private static final List<String> MIME_TYPES = List.of("application/x-pava", "text/x-pava");
+
+    @Override
+    public String getEngineName() {
+        return "Pava";
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return AstCache.VERSION;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return EXTENSIONS;
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return MIME_TYPES;
+    }
+
+    @Override
+    public List<String> getNames() {
+        return NAMES;
+    }
+
+    @Override
+    public String getLanguageName() {
+        return "Pava";
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return AstCache.VERSION;
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        switch (key) {
+            case ScriptEngine.ENGINE: return getEngineName();
+            case ScriptEngine.ENGINE_VERSION: return getEngineVersion();
+            case ScriptEngine.NAME: return NAMES.get(0);
+            case ScriptEngine.LANGUAGE: return getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION: return getLanguageVersion();
+            // Each evaluation gets its own globals, but the engine's bindings are shared.
+            case "THREADING": return "MULTITHREADED";
+            default: return null;
+        }
+    }
+
+    @Override
+    public String getMethodCallSyntax(String obj, String m, String... args) {
+        return obj + "." + m + "(" + String.join(", ", args) + ")";
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        // String literals cannot contain a quote, so quotes are spliced in.
+        String literal = "\"" + toDisplay.replace("\\", "\\\\").replace("\"", "\" + fromAsciiCode(34) + \"") + "\"";
+        return "print " + literal + ";";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        StringBuilder program = new StringBuilder();
+        for (String statement : statements) {
+            program.append(statement);
+            if (!statement.trim().endsWith(";") && !statement.trim().endsWith("}")) {
+                program.append(';');
+            }
+            program.append('\n');
+        }
+        return program.toString();
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new PavaScriptEngine(this);
+    }
+}
@@ -0,0 +1,65 @@
+package script;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+// Encodes a Reader as UTF-8 bytes, for the script's standard input.
+final class ReaderInputStream extends InputStream {
+    private final Reader source;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(1024).flip();
+    private final ByteBuffer bytes = ByteBuffer.allocate(4096).flip();
+    private boolean eof = false;
+
+    ReaderInputStream(Reader source) {
+        this.source = source;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!bytes.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return bytes.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!bytes.hasRemaining() && !fill()) {
+            return -1;
+        }
+        int n = Math.min(length, bytes.remaining());
+        bytes.get(b, offset, n);
+        return n;
+    }
+
+    private boolean fill() throws IOException {
+        while (true) {
+            if (!eof) {
+                chars.compact();
+                eof = source.read(chars) < 0;
+                chars.flip();
+            }
+            bytes.clear();
+            encoder.encode(chars, bytes, eof);
+            bytes.flip();
+            if (bytes.hasRemaining()) {
+                return true;
+            }
+            if (eof) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package script;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+import interpreter.ExecutionLimits;
+import interpreter.ExitSignal;
+import interpreter.Interpreter;
+import interpreter.ModuleLibrary;
+import interpreter.ScriptIo;
+import lexer.Lexer;
+import parser.Parser;
+import parser.Stmt;
+import parser.SyntaxError;
+
+/*
+    Runs many small scripts in one JVM, each isolated from the others.
+
+    The host owns what can be shared: parsed scripts (Script, immutable),
+    one ModuleLibrary of parsed modules, and the process-wide builtins.
+    Each run gets an interpreter with its own globals, imported module
+    instances and streams. Interpreters are pooled and reset between runs,
+    so a run does not rebuild them; exit() ends only its own run.
+
+    Safe to use from many threads; runs beyond the pool size use fresh
+    interpreters that are dropped afterwards.
+*/
+public final class ScriptHost {
+    private final Path workingDirectory;
+    private final ModuleLibrary library;
+    private final BlockingQueue<Interpreter> idle;
+
+    // A parsed script, runnable any number of times, concurrently.
+    public static final class Script {
+        private final List<Stmt> statements;
+
+        private Script(List<Stmt> statements) {
+            this.statements = statements;
+        }
+    }
+
+    // Scripts resolve relative paths and imports against workingDirectory
+    // (null for the process's own); up to poolSize idle interpreters are kept.
+    public ScriptHost(Path workingDirectory, int poolSize) {
+        this.workingDirectory = workingDirectory;
+        this.library = new ModuleLibrary(workingDirectory);
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    // The modules shared by every run, e.g. to preload them.
+    public ModuleLibrary library() {
+        return library;
+    }
+
+    // Parses a script, reporting lexical and syntax errors as exceptions.
+    public Script compile(String source) {
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        Lexer lexer = new Lexer(source);
+        lexer.errors = new PrintStream(messages, true, StandardCharsets.UTF_8);
+        List<Stmt> statements;
+        try {
+            statements = new Parser(lexer.scanTokenBuffer()).parse();
+        } catch (SyntaxError err) {
+            throw new IllegalArgumentException("[Syntax Error] " + err.getMessage());
+        }
+        if (lexer.errorCode != 0) {
+            throw new IllegalArgumentException(messages.toString(StandardCharsets.UTF_8).trim());
+        }
+        return new Script(statements);
+    }
+
+    // Runs a script and returns its exit status, as the pava command would:
+    // 0, the status given to exit(), or 70 after a runtime error, which is
+    // written to err. A null in reads as empty input.
+    public int run(Script script, Reader in, Writer out, Writer err) {
+        return run(script, in, out, err, null);
+    }
+
+    // As run(script, in, out, err), stopping the script with a runtime
+    // error (status 70) once it exceeds a step budget (steps are loop
+    // iterations and function calls) or a timeout in milliseconds; zero or
+    // less means no limit.
+    public int run(Script script, Reader in, Writer out, Writer err, long maxSteps, long timeoutMillis) {
+        return run(script, in, out, err, limits -> {
+            if (maxSteps > 0) {
+                limits.setStepBudget(maxSteps);
+            }
+            if (timeoutMillis > 0) {
+                limits.setTimeout(timeoutMillis);
+            }
+        });
+    }
+
+    // As run(script, in, out, err), first passing the run's limits to
+    // configure, which may also keep them to cancel the run from another
+    // thread.
+    public int run(Script script, Reader in, Writer out, Writer err, Consumer<ExecutionLimits> configure) {
+        InputStream input = in != null ? new ReaderInputStream(in) : InputStream.nullInputStream();
+        PrintStream errors = new PrintStream(new WriterOutputStream(err), true, StandardCharsets.UTF_8);
+        ScriptIo io = new ScriptIo(input, out, errors, workingDirectory);
+
+        Interpreter interpreter = idle.poll();
+        if (interpreter == null) {
+            interpreter = new Interpreter(io, library);
+        } else {
+            interpreter.reset(io);
+        }
+        if (configure != null) {
+            configure.accept(interpreter.limits());
+        }
+        int status = 0;
+        try {
+            interpreter.interpret(script.statements);
+        } catch (ExitSignal exit) {
+            status = exit.status;
+        } catch (RuntimeException re) {
+            status = 70;
+            io.err().println("[ERROR] " + re.getMessage());
+        } catch (StackOverflowError e) {
+            // Runaway recursion ends the run, not the host's thread.
+            status = 70;
+            io.err().println("[ERROR] Stack overflow.");
+        } finally {
+            try {
+                io.flush();
+            } catch (RuntimeException re) {
+                status = status == 0 ? 70 : status;
+                io.err().println("[ERROR] " + re.getMessage());
+            }
+            io.err().flush();
+            // Drop the run's state before pooling, so it can be collected.
+            interpreter.reset(ScriptIo.SYSTEM);
+            idle.offer(interpreter);
+        }
+        return status;
+    }
+
+    // As run(script, in, out, err), with no input and errors written to out.
+    public int run(Script script, Writer out) {
+        return run(script, null, out, out);
+    }
+}
@@ -0,0 +1,69 @@
+package script;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+// Decodes UTF-8 bytes onto a Writer, for the script's standard error.
+final class WriterOutputStream extends OutputStream {
+    private final Writer target;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(1024);
+    private final CharBuffer chars = CharBuffer.allocate(1024);
+
+    WriterOutputStream(Writer target) {
+        this.target = target;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int offset, int length) throws IOException {
+        while (length > 0) {
+            int n = Math.min(length, bytes.remaining());
+            bytes.put(b, offset, n);
+            offset += n;
+            length -= n;
+            bytes.flip();
+            while (true) {
+                CoderResult result = decoder.decode(bytes, chars, false);
+                drain();
+                if (result.isUnderflow()) {
+                    break;
+                }
+            }
+            // A partial character waits for its remaining bytes.
+            bytes.compact();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        target.flush();
+    }
+
+    // The writer belongs to the script context, so it is flushed but not closed.
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private void drain() throws IOException {
+        if (chars.position() > 0) {
+            target.write(chars.array(), 0, chars.position());
+            chars.clear();
+        }
+    }
+}